@@ -0,0 +1,96 @@
+/**
+ * Remembers the mean color of every block in the last frame FusedPixelize pixelized, and the color that block turned into,
+ * so the blocks that haven't changed in the next frame reuse their color instead of being chromakeyed and having their palette color picked again.
+ * A block counts as unchanged when its mean is exactly the same, which for captured game footage is most of them.
+ * <br>
+ * One cache is used for one sequence of frames, all the same size and pixelized with the same settings, one frame at a time.
+ * The blocks of a frame are filled on several threads, but each block is only ever touched by the thread its row is on.
+ * A reused block keeps the color it was picked with, so with random dithering it keeps the noise of the frame it last changed in.
+ * Frames that don't go through the fused pass, like error diffusion, can't use the cache and leave it empty for the next frame.
+ * <br>
+ * This file has no testing functionality. Running it from the terminal will do nothing.
+ */
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CellCache {
+    private int cells_wide = 0;
+    private int cells_high = 0;
+    private int[] means = new int[0];
+    private int[] colors = new int[0];
+    //whether every block has been stored by the frame before, so the means can be compared.
+    private boolean filled = false;
+    private final AtomicInteger reused = new AtomicInteger();
+    private int last_reused = 0;
+    private int last_cells = 0;
+
+    /**
+     * Gets the cache ready for a frame. A frame with a different number of blocks from the last one starts the cache over.
+     * @param cells_wide int, the number of blocks across.
+     * @param cells_high int, the number of blocks down.
+     */
+    void startFrame(int cells_wide, int cells_high){
+        if (cells_wide != this.cells_wide || cells_high != this.cells_high){
+            this.cells_wide = cells_wide;
+            this.cells_high = cells_high;
+            means = new int[cells_wide * cells_high];
+            colors = new int[cells_wide * cells_high];
+            filled = false;
+        }
+        reused.set(0);
+    }
+
+    /**
+     * Checks whether a block has the same mean it had in the last frame.
+     * @param cell int, the index of the block, row by row.
+     * @param mean int, the block's mean color in this frame.
+     * @return unchanged boolean, true if the color from the last frame can be used.
+     */
+    boolean unchanged(int cell, int mean){
+        return filled && means[cell] == mean;
+    }
+
+    int color(int cell){
+        return colors[cell];
+    }
+
+    void store(int cell, int mean, int color){
+        means[cell] = mean;
+        colors[cell] = color;
+    }
+
+    void countReused(int count){
+        reused.addAndGet(count);
+    }
+
+    //called once every block of the frame has been stored.
+    void finishFrame(){
+        filled = true;
+        last_reused = reused.get();
+        last_cells = cells_wide * cells_high;
+    }
+
+    //called instead when a frame doesn't go through the fused pass, since none of its blocks were stored.
+    void skipFrame(){
+        filled = false;
+        last_reused = 0;
+        last_cells = 0;
+    }
+
+    /**
+     * @return reused int, how many blocks of the last frame reused their color.
+     */
+    public int reusedCells(){ return last_reused; }
+
+    /**
+     * @return cells int, how many blocks the last frame had, or 0 if it didn't go through the fused pass.
+     */
+    public int cellCount(){ return last_cells; }
+
+    /**
+     * @return hit_rate double, the share of the last frame's blocks that reused their color, from 0 to 1.
+     */
+    public double hitRate(){
+        return last_cells == 0 ? 0 : (double)last_reused / last_cells;
+    }
+}
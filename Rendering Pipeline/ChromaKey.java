@@ -0,0 +1,95 @@
+/**
+ * Decides what chromakeying does to each pixel, for GreenScreen and FusedPixelize.
+ * A pixel is removed when the sum of its channel differences from the key color is at most the tolerance. The defaults, pure green and 330,
+ * remove exactly the pixels GreenScreen always has.
+ * <br>
+ * Two optional extras, both off by default:
+ *             softness, pixels up to this much further from the key than the tolerance are faded instead of kept, from see-through at the
+ *             tolerance to solid at the tolerance plus the softness, which smooths the edge around a keyed subject.
+ *             spill, the key color reflecting onto the subject, like a green glow on the edges. The key's strongest channel is limited to the
+ *             stronger of the other two in every pixel that's kept, which takes out the tint without touching colors that don't lean toward the key.
+ *             A key without one strongest channel, like yellow or white, has no spill to take out.
+ * Palette reduction only keeps pixels that are more than half solid, so after it a soft edge comes out as the edge half way through the softness.
+ * <br>
+ * The settings don't change once it's made, so one ChromaKey can be shared by every thread.
+ * This file has no testing functionality. Running it from the terminal will do nothing.
+ */
+
+public final class ChromaKey {
+    //what removed pixels become, the same transparent black ReducePalette uses.
+    public static final int TRANSPARENT = 0;
+
+    private final int key_red;
+    private final int key_green;
+    private final int key_blue;
+    private final int tolerance;
+    private final int softness;
+    //the channel spill is taken out of, 0 red, 1 green, 2 blue, or -1 for none.
+    private final int spill_channel;
+
+    /**
+     * The constructor of the ChromaKey object.
+     * @param key_color int, the packed RGB color being removed.
+     * @param tolerance int, the furthest a color can be from the key color and still be removed, as a sum of channel differences.
+     * @param softness int, how far past the tolerance pixels are faded, or 0 for a hard edge.
+     * @param spill boolean, whether the key color's tint is taken out of the pixels that are kept.
+     */
+    public ChromaKey(int key_color, int tolerance, int softness, boolean spill){
+        key_red = (key_color >> 16) & 0xFF;
+        key_green = (key_color >> 8) & 0xFF;
+        key_blue = key_color & 0xFF;
+        this.tolerance = tolerance;
+        this.softness = Math.max(0, softness);
+        spill_channel = spill ? strongestChannel(key_red, key_green, key_blue) : -1;
+    }
+
+    /**
+     * Makes the ChromaKey set by the key_color, key_tolerance, key_softness and spill options.
+     * @param options PixelizeOptions, the optional settings for this run.
+     * @return key ChromaKey, the chromakey.
+     */
+    public static ChromaKey fromOptions(PixelizeOptions options){
+        return new ChromaKey(options.key_color, options.key_tolerance, options.key_softness, options.spill);
+    }
+
+    //the channel that is higher than both of the others, or -1 if there isn't one.
+    private static int strongestChannel(int red, int green, int blue){
+        if (red > green && red > blue){
+            return 0;
+        } else if (green > red && green > blue){
+            return 1;
+        } else if (blue > red && blue > green){
+            return 2;
+        }
+        return -1;
+    }
+
+    /**
+     * Chromakeys one pixel.
+     * @param argb int, the pixel in the default packed ARGB format.
+     * @return keyed int, TRANSPARENT if it's removed, otherwise the pixel with any fading and spill taken out.
+     */
+    public int apply(int argb){
+        int red = (argb >> 16) & 0xFF;
+        int green = (argb >> 8) & 0xFF;
+        int blue = argb & 0xFF;
+        int distance = Math.abs(red - key_red) + Math.abs(green - key_green) + Math.abs(blue - key_blue);
+        if (distance <= tolerance){
+            return TRANSPARENT;
+        }
+
+        int alpha = argb >>> 24;
+        if (distance <= tolerance + softness){
+            alpha = alpha * (distance - tolerance) / softness;
+        }
+
+        if (spill_channel == 0){
+            red = Math.min(red, Math.max(green, blue));
+        } else if (spill_channel == 1){
+            green = Math.min(green, Math.max(red, blue));
+        } else if (spill_channel == 2){
+            blue = Math.min(blue, Math.max(red, green));
+        }
+        return (alpha << 24) | (red << 16) | (green << 8) | blue;
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * A way of measuring how different two colors are, for picking palette colors that look closer than the sum of channel differences picks.
+ * Every metric turns a color into three whole number coordinates, and the distance between two colors is the weighted sum of the squared
+ * differences between their coordinates, so one k-d tree search works for all of them, see MetricColorSearch.
+ * <br>
+ * The metrics, picked by the metric option:
+ *             "manhattan" = the sum of the red, green and blue differences, which every search uses without a metric (default).
+ *             "weighted" = squared red, green and blue differences weighted 2, 4 and 3, since the eye is most sensitive to green.
+ *             "euclidean" = squared red, green and blue differences.
+ *             "cielab" = the CIE 1976 color difference, the straight line distance in CIELAB with a D65 white point.
+ *             "oklab" = the straight line distance in Oklab, which keeps hues more even than CIELAB, especially blues.
+ * <br>
+ * Turning a color into CIELAB or Oklab needs each channel taken out of sRGB's gamma, a matrix, then a cube root. The gamma is worked out once for
+ * each of the 256 channel values and the matrix is folded into those tables, so a conversion is nine table reads and three cube roots.
+ * MetricColorSearch keeps the conversions it has done, so repeated colors don't pay for even that.
+ * <br>
+ * This file has no testing functionality. Running it from the terminal will do nothing.
+ */
+
+public final class ColorMetric {
+    //the coordinates are scaled to whole numbers by these, keeping the squared distances well inside an int.
+    private static final double LAB_SCALE = 16;
+    private static final double OKLAB_SCALE = 4096;
+
+    //each sRGB channel value taken out of gamma, from 0 to 1.
+    private static final double[] LINEAR = linearTable();
+
+    private final String name;
+    private final int kind;
+    private final int[] weights;
+    //the matrix columns for each channel value, table[channel][row][value], only for cielab and oklab.
+    private final double[][][] tables;
+
+    private static final int RGB = 0;
+    private static final int CIELAB = 1;
+    private static final int OKLAB = 2;
+
+    private ColorMetric(String name, int kind, int[] weights, double[][] matrix){
+        this.name = name;
+        this.kind = kind;
+        this.weights = weights;
+        tables = matrix == null ? null : foldTables(matrix);
+    }
+
+    /**
+     * Finds a metric by name.
+     * @param name String, the metric's name, see the list above. "manhattan" has no metric, since every search measures that already.
+     * @return metric ColorMetric, the metric.
+     */
+    public static ColorMetric named(String name){
+        if (name.equals("weighted")){
+            return new ColorMetric(name, RGB, new int[]{2, 4, 3}, null);
+        } else if (name.equals("euclidean")){
+            return new ColorMetric(name, RGB, new int[]{1, 1, 1}, null);
+        } else if (name.equals("cielab")){
+            //linear sRGB to XYZ, with each row divided by the D65 white point so white comes out as 1, 1, 1.
+            return new ColorMetric(name, CIELAB, new int[]{1, 1, 1}, new double[][]{
+                    {0.4124564 / 0.95047, 0.3575761 / 0.95047, 0.1804375 / 0.95047},
+                    {0.2126729, 0.7151522, 0.0721750},
+                    {0.0193339 / 1.08883, 0.1191920 / 1.08883, 0.9503041 / 1.08883}});
+        } else if (name.equals("oklab")){
+            //linear sRGB to Oklab's LMS.
+            return new ColorMetric(name, OKLAB, new int[]{1, 1, 1}, new double[][]{
+                    {0.4122214708, 0.5363325363, 0.0514459929},
+                    {0.2119034982, 0.6806995451, 0.1073969566},
+                    {0.0883024619, 0.2817188376, 0.6299787005}});
+        }
+        throw new IllegalArgumentException(String.format("Unknown metric \"%s\", the metrics are: manhattan, weighted, euclidean, cielab, oklab", name));
+    }
+
+    public String name(){ return name; }
+
+    /**
+     * @param axis int, 0, 1 or 2.
+     * @return weight int, what the squared difference along this axis is multiplied by.
+     */
+    public int weight(int axis){ return weights[axis]; }
+
+    /**
+     * Turns a color into this metric's coordinates.
+     * @param rgb int, the color in the default packed ARGB format. Alpha is ignored.
+     * @param coordinates int[], where the three coordinates are written.
+     */
+    public void coordinates(int rgb, int[] coordinates){
+        int red = (rgb >> 16) & 0xFF;
+        int green = (rgb >> 8) & 0xFF;
+        int blue = rgb & 0xFF;
+        if (kind == RGB){
+            coordinates[0] = red;
+            coordinates[1] = green;
+            coordinates[2] = blue;
+            return;
+        }
+
+        double x = tables[0][0][red] + tables[1][0][green] + tables[2][0][blue];
+        double y = tables[0][1][red] + tables[1][1][green] + tables[2][1][blue];
+        double z = tables[0][2][red] + tables[1][2][green] + tables[2][2][blue];
+        if (kind == CIELAB){
+            double fx = labCurve(x);
+            double fy = labCurve(y);
+            double fz = labCurve(z);
+            coordinates[0] = (int)Math.round((116 * fy - 16) * LAB_SCALE);
+            coordinates[1] = (int)Math.round(500 * (fx - fy) * LAB_SCALE);
+            coordinates[2] = (int)Math.round(200 * (fy - fz) * LAB_SCALE);
+        } else {
+            double l = Math.cbrt(x);
+            double m = Math.cbrt(y);
+            double s = Math.cbrt(z);
+            coordinates[0] = (int)Math.round((0.2104542553 * l + 0.7936177850 * m - 0.0040720468 * s) * OKLAB_SCALE);
+            coordinates[1] = (int)Math.round((1.9779984951 * l - 2.4285922050 * m + 0.4505937099 * s) * OKLAB_SCALE);
+            coordinates[2] = (int)Math.round((0.0259040371 * l + 0.7827717662 * m - 0.8086757660 * s) * OKLAB_SCALE);
+        }
+    }
+
+    //CIELAB's cube root, which turns into a straight line near black.
+    private static double labCurve(double t){
+        if (t > 216.0 / 24389){
+            return Math.cbrt(t);
+        }
+        return (24389.0 / 27 * t + 16) / 116;
+    }
+
+    private static double[] linearTable(){
+        double[] table = new double[256];
+        for (int value = 0; value < 256; value++){
+            double c = value / 255.0;
+            table[value] = c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+        }
+        return table;
+    }
+
+    //works out each channel's share of every row of the matrix for all 256 values, so converting a color only adds them up.
+    private static double[][][] foldTables(double[][] matrix){
+        double[][][] tables = new double[3][3][256];
+        for (int channel = 0; channel < 3; channel++){
+            for (int row = 0; row < 3; row++){
+                for (int value = 0; value < 256; value++){
+                    tables[channel][row][value] = matrix[row][channel] * LINEAR[value];
+                }
+            }
+        }
+        return tables;
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * The interface for objects that find the closest color in a palette. Closest means the lowest sum of the red, green and blue differences,
+ * which is the same as the highest score in ReducePalette, and ties always go to the color that comes first in the palette.
+ * <br>
+ * The dithering filters also need the runner up. The runner up that findHighest has always used is the best color that comes before the winner in the palette,
+ * so that is what nearestBefore answers, and every search gives the same answers as scoring every color.
+ */
+
+interface ColorSearch{
+    /**
+     * Returns the index of the palette color closest to the color passed in. Alpha is ignored.
+     * @param rgb int, the color in the default packed ARGB format.
+     * @return index int, the index of the closest color in the palette.
+     */
+    int nearest(int rgb);
+
+    /**
+     * Returns the index of the closest palette color out of the colors that come before limit in the palette.
+     * @param rgb int, the color in the default packed ARGB format.
+     * @param limit int, only palette indexes below this are considered. Must be at least 1.
+     * @return index int, the index of the closest of those colors.
+     */
+    int nearestBefore(int rgb, int limit);
+
+    /**
+     * Returns the runner up color that findHighest dithers against, the best color before the winner, or the winner itself if it is the first color.
+     * @param rgb int, the color in the default packed ARGB format.
+     * @param winner int, the index returned by nearest for the same color.
+     * @return index int, the index of the runner up color.
+     */
+    default int runnerUp(int rgb, int winner){
+        if (winner == 0){
+            return 0;
+        }
+        return nearestBefore(rgb, winner);
+    }
+
+    /**
+     * Builds the search named by search_type for a palette.
+     * @param search_type String, the type of search.
+     *             "linear" = scores every color in the palette.
+     *             "kdtree" = a k-d tree over the palette colors.
+     *             "vector" = scores several palette colors at once with the Vector API, see VectorColorSearch.
+     *             "lut" = the precomputed lookup table.
+     * @param palette Palette, the palette being searched.
+     * @return search ColorSearch, the search object.
+     * @throws IllegalArgumentException if the search type isn't one of those.
+     */
+    static ColorSearch create(String search_type, Palette palette){
+        if (search_type.equals("linear")){
+            return new LinearColorSearch(palette);
+        } else if (search_type.equals("kdtree")){
+            return new KdTreeColorSearch(palette);
+        } else if (search_type.equals("vector")){
+            return createVector(palette);
+        }
+        requireSearchType(search_type);
+        return new PaletteLookup(palette);
+    }
+
+    /**
+     * Builds the search for a palette that measures distance by a metric. Every metric other than "manhattan" is searched with a MetricColorSearch,
+     * which scores every color for the "linear" search type and uses its k-d tree for the rest.
+     * @param search_type String, the type of search.
+     * @param metric String, the name of the metric, see ColorMetric.
+     * @param palette Palette, the palette being searched.
+     * @return search ColorSearch, the search object.
+     * @throws IllegalArgumentException if the search type or the metric is unknown.
+     */
+    static ColorSearch create(String search_type, String metric, Palette palette){
+        if (metric.equals("manhattan")){
+            return create(search_type, palette);
+        }
+        //the metric searches only tell linear apart from the rest, but a misspelt search type is still an error.
+        requireSearchType(search_type);
+        return new MetricColorSearch(palette, ColorMetric.named(metric), search_type.equals("linear"));
+    }
+
+    private static void requireSearchType(String search_type){
+        if (!search_type.equals("lut") && !search_type.equals("kdtree") && !search_type.equals("linear") && !search_type.equals("vector")){
+            throw new IllegalArgumentException(String.format("Unknown search \"%s\", the searches are: lut, kdtree, linear, vector", search_type));
+        }
+    }
+
+    /**
+     * Builds a VectorColorSearch, or a LinearColorSearch if it can't be used. It's loaded by name, since it's only compiled on Java 17 or newer,
+     * and it can only be loaded when the JVM was started with --add-modules jdk.incubator.vector.
+     * @param palette Palette, the palette being searched.
+     * @return search ColorSearch, the search object.
+     */
+    private static ColorSearch createVector(Palette palette){
+        try {
+            return (ColorSearch)Class.forName("VectorColorSearch").getConstructor(Palette.class).newInstance(palette);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            System.err.println(String.format("The vector search needs Java 17 or newer started with --add-modules jdk.incubator.vector, using the linear search instead: %s", e));
+            return new LinearColorSearch(palette);
+        }
+    }
+}
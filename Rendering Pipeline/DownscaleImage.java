@@ -1,6 +1,12 @@
 /**
  * Passes in an image and divides it's resolution by the resolution_coefficient. Can be run directly from terminal for testing purposes.
  * <br>
+ * Each output pixel is the mean of a window of the original. Every window is added up from running sums of the columns under it,
+ * so the time taken only depends on the size of the image, not on the resolution_coefficient. There are two modes, picked with the downscale option:
+ *             "centred" = the window is centred on the top left corner of its block, and the parts hanging off the image count as black.
+ *             This is how it has always worked, and it leaves extra blank pixels on the right and bottom (default).
+ *             "box" = the window is the block itself, and blocks cut off by the edge of the image are the mean of only the pixels they cover.
+ * <br>
  * Compilation:  javac DownscaleImage.java <br>
  * Execution:    java DownscaleImage fileName String, resolution_coefficient int   <br>
  * <br>
@@ -12,11 +18,11 @@
  */
 
 
-import java.awt.*;
 import java.awt.image.*;
 import javax.imageio.*;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 
 
 public class DownscaleImage extends ImageEditParent{
@@ -27,16 +33,26 @@ public class DownscaleImage extends ImageEditParent{
      * @param resolution_coefficient int, the coefficient for the size of the image.
      */
     public DownscaleImage(BufferedImage original, int resolution_coefficient, boolean do_not_visualize){
+        this(original, resolution_coefficient, do_not_visualize, new PixelizeOptions());
+    }
+
+    /**
+     * The constructor of the DownscaleImage object with a set of options, which set the downscale mode and how many threads it runs on.
+     * @param original BufferedImage, the original image that this object edits.
+     * @param resolution_coefficient int, the coefficient for the size of the image.
+     * @param options PixelizeOptions, the optional settings for this run.
+     */
+    public DownscaleImage(BufferedImage original, int resolution_coefficient, boolean do_not_visualize, PixelizeOptions options){
         original_image = original;
 
         if (resolution_coefficient != 1) {
-            final_image = lowerResolution(original_image, resolution_coefficient);
+            final_image = lowerResolution(original_image, resolution_coefficient, isBox(options), options.threads);
         }else{
             final_image = original_image;
         }
 
         if (!do_not_visualize) {
-            displayImage(final_image, "Lowered resolution");
+            ImageViewer.displayImage(final_image, "Lowered resolution");
 
             //this only runs if this is run from the console
             saveFile("downscaled_image.png",final_image);
@@ -46,73 +62,144 @@ public class DownscaleImage extends ImageEditParent{
      * Downscales the original image, dividing it's size by the resolution_coefficient by creating an image out of the mean values of each pixel in the origional image.
      * @param original BufferedImage, the original image that this edits.
      * @param resolution_coefficient int, the coefficient for the size of the image.
+     * @param box boolean, whether each window is its own block instead of being centred on the block's corner.
+     * @param parallelism int, the number of threads the rows are spread over.
      * @return duplicate BufferedImage, the resized image.
      */
-    private BufferedImage lowerResolution( BufferedImage original, int resolution_coefficient){
-        int residual_height = original.getHeight()%resolution_coefficient;
-        int residual_width = original.getWidth()%resolution_coefficient;
-        // The output image begins as a blank image that is the same size and type as the original
-        BufferedImage duplicate = new BufferedImage((original.getWidth()/resolution_coefficient) + residual_width, (original.getHeight()/resolution_coefficient) + residual_height, original.getType());
-
-
-        // Iterate over the original, copying each pixel's RGB color over to the new image (the copy)
-        int ww = resolution_coefficient;
-        int wh = resolution_coefficient;
-        int rgb;
-        int[][] redArr = new int[wh][ww];
-        int[][] greenArr = new int[wh][ww];
-        int[][] blueArr = new int[wh][ww];
-
-        Color colorIn, colorOut;
-        for (int row=0; row<original.getHeight(); row += resolution_coefficient) {
-            for (int col=0; col < original.getWidth(); col += resolution_coefficient) {
-                for (int sRow = 0; sRow < wh; sRow++) {
-                    for (int sCol = 0; sCol < ww; sCol++) {
-                        try{
-                            rgb = original.getRGB(col - ww / 2 + sCol, row - wh / 2 + sRow);
-                            colorIn = new Color(rgb);
-                            redArr[sRow][sCol] = colorIn.getRed();
-                            greenArr[sRow][sCol] = colorIn.getGreen();
-                            blueArr[sRow][sCol] = colorIn.getBlue();
-                        }
-                        catch(Exception e){
-                            redArr[sRow][sCol] = 256;
-                            greenArr[sRow][sCol] = 256;
-                            blueArr[sRow][sCol] = 256;
-                        }
-                    }
-                }
-                int meanRed = meanResult(redArr,ww,wh);
-                int meanGreen = meanResult(greenArr,ww,wh);
-                int meanBlue = meanResult(blueArr,ww,wh);
-                colorOut = new Color(meanRed, meanGreen, meanBlue);
-                //System.out.println( String.format("original[%d][%d] = %d, %d, %d", row, col, red, green, blue) );
-                duplicate.setRGB(col/resolution_coefficient, row/resolution_coefficient, colorOut.getRGB());
+    private BufferedImage lowerResolution( BufferedImage original, int resolution_coefficient, boolean box, int parallelism){
+        int width = original.getWidth();
+        int height = original.getHeight();
+        // The output image begins as a blank image, the same type as the original
+        int duplicate_width = cellCount(width, resolution_coefficient, box);
+        int duplicate_height = cellCount(height, resolution_coefficient, box);
+        int[] pixels = readPixels(original);
+        int[] duplicate = new int[duplicate_width * duplicate_height];
+
+        //the bands are rows of the downscaled image, one for every resolution_coefficient rows of the original.
+        int cells_high = (height + resolution_coefficient - 1) / resolution_coefficient;
+        RowBands.run(cells_high, parallelism, (first_row, end_row) -> {
+            int[] sums = new int[sumsLength(width)];
+            int[] means = new int[(width + resolution_coefficient - 1) / resolution_coefficient];
+            for (int cell_row = first_row; cell_row < end_row; cell_row++) {
+                meanRow(pixels, width, height, cell_row, resolution_coefficient, box, sums, means);
+                System.arraycopy(means, 0, duplicate, cell_row * duplicate_width, means.length);
             }
-        }
+        });
         // Return a reference to the shiny new copy of the input image
-        return duplicate;
+        return writePixels(duplicate, duplicate_width, duplicate_height, original.getType());
+    }
+
+    /**
+     * Whether the options ask for box windows rather than the centred windows DownscaleImage has always used.
+     * @param options PixelizeOptions, the optional settings for this run.
+     * @return box boolean, true for box windows.
+     * @throws IllegalArgumentException if the downscale option is neither "centred" nor "box".
+     */
+    static boolean isBox(PixelizeOptions options){
+        if (options.downscale.equals("box")){
+            return true;
+        } else if (options.downscale.equals("centred")){
+            return false;
+        }
+        throw new IllegalArgumentException(String.format("Unknown downscale \"%s\", the downscales are: centred, box", options.downscale));
+    }
+
+    /**
+     * The width or height of the downscaled image. Centred windows keep the extra blank pixels DownscaleImage has always added, one for every
+     * leftover pixel of the original, box windows round up so the last block covers the leftover pixels.
+     * @param size int, the width or height of the original.
+     * @param resolution_coefficient int, the coefficient for the size of the image.
+     * @param box boolean, whether the windows are box windows.
+     * @return cells int, the width or height of the downscaled image.
+     */
+    static int cellCount(int size, int resolution_coefficient, boolean box){
+        if (box){
+            return (size + resolution_coefficient - 1) / resolution_coefficient;
+        }
+        return (size / resolution_coefficient) + (size % resolution_coefficient);
     }
 
     /**
-     * Produces the mean of an int[][] which is passed in.
-     * @param mean_list int[][], the list of ints you want to get the mean of.
-     * @param ww int, the width of the mean_list.
-     * @param wh int, the height of the mean_list.
-     * @return full_number int, the mean of the mean_list.
+     * The length of the sums array meanRow needs for an image of the given width.
+     * @param width int, the width of the image.
+     * @return length int, the length of the array.
      */
-    private int meanResult (int[][] mean_list, int ww, int wh){
-        int full_number = 0;
-        for(int i = 0; i < ww; i += 1){
-            for(int b = 0; b < wh; b += 1) {
-                if (mean_list[i][b] != 256) {
-                    full_number += mean_list[i][b];
-                }
+    static int sumsLength(int width){
+        return 3 * (width + 1);
+    }
+
+    /**
+     * Produces the mean colors for one row of blocks. The red, green and blue of every column inside the row's window are added up,
+     * then turned into running sums across the row, so the sum of any window is the difference of two of them.
+     * Windows are clipped to the image before anything is added up.
+     * <br>
+     * Centred windows start half a window up and to the left of the block, and their sum is always divided by the full window size.
+     * Box windows are the block itself, and their sum is divided by the number of pixels in the block that are inside the image.
+     * <br>
+     * The running sums are kept as ints and are allowed to overflow on very wide images, the difference between two of them is still right
+     * as long as the sum of one window fits in an int.
+     * @param pixels int[], the packed ARGB pixels of the image.
+     * @param width int, the width of the image.
+     * @param height int, the height of the image.
+     * @param cell_row int, the row of blocks.
+     * @param resolution_coefficient int, the width and height of the window.
+     * @param box boolean, whether the windows are box windows instead of centred ones.
+     * @param sums int[], working space of sumsLength(width), overwritten.
+     * @param means int[], filled with the opaque packed ARGB mean of every block whose corner is inside the image.
+     */
+    static void meanRow(int[] pixels, int width, int height, int cell_row, int resolution_coefficient, boolean box, int[] sums, int[] means){
+        meanRow(pixels, 0, width, height, cell_row, resolution_coefficient, box, sums, means);
+    }
+
+    /**
+     * Produces the mean colors for one row of blocks from a strip of the image rather than the whole of it, see StripPixelize.
+     * The strip has to hold every row of the row of blocks' window that is inside the image.
+     * @param pixels int[], the packed ARGB pixels of the strip.
+     * @param first_row int, the row of the image the strip starts at.
+     * @param width int, the width of the image.
+     * @param height int, the height of the whole image, not the strip.
+     * @param cell_row int, the row of blocks, counted from the top of the image.
+     * @param resolution_coefficient int, the width and height of the window.
+     * @param box boolean, whether the windows are box windows instead of centred ones.
+     * @param sums int[], working space of sumsLength(width), overwritten.
+     * @param means int[], filled with the opaque packed ARGB mean of every block whose corner is inside the image.
+     */
+    static void meanRow(int[] pixels, int first_row, int width, int height, int cell_row, int resolution_coefficient, boolean box, int[] sums, int[] means){
+        int shift = box ? 0 : resolution_coefficient / 2;
+        int row = cell_row * resolution_coefficient;
+        int top = Math.max(row - shift, 0);
+        int bottom = Math.min(row - shift + resolution_coefficient, height);
+
+        //the column sums go one place to the right, so the running sums can be built in place with a zero in front.
+        Arrays.fill(sums, 0);
+        for (int sRow = top; sRow < bottom; sRow++) {
+            int offset = (sRow - first_row) * width;
+            for (int sCol = 0, s = 3; sCol < width; sCol++, s += 3) {
+                int rgb = pixels[offset + sCol];
+                sums[s] += (rgb >> 16) & 0xFF;
+                sums[s + 1] += (rgb >> 8) & 0xFF;
+                sums[s + 2] += rgb & 0xFF;
+            }
+        }
+        for (int s = 3; s < sums.length; s++){
+            sums[s] += sums[s - 3];
+        }
+
+        int window_area = resolution_coefficient * resolution_coefficient;
+        for (int cell_col = 0; cell_col < means.length; cell_col++) {
+            int col = cell_col * resolution_coefficient;
+            int left = 3 * Math.max(col - shift, 0);
+            int right = 3 * Math.min(col - shift + resolution_coefficient, width);
+            if (box){
+                window_area = (bottom - top) * ((right - left) / 3);
             }
+            int sumRed = sums[right] - sums[left];
+            int sumGreen = sums[right + 1] - sums[left + 1];
+            int sumBlue = sums[right + 2] - sums[left + 2];
+            means[cell_col] = 0xFF000000 | ((sumRed / window_area) << 16) | ((sumGreen / window_area) << 8) | (sumBlue / window_area);
         }
-        full_number = full_number / (ww * wh);
-        return full_number;
     }
+
     /**
      * Reads in the BufferedImage file.
      * @param fileName String, the file name as a string.
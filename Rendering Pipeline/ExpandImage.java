@@ -0,0 +1,89 @@
+/**
+ * Scales images saved at the lowered resolution back up to full size, for anything that needs the full size image rather than scaling it itself.
+ * The scale is read from the image with ScaleMetadata, unless one is given. The image is written through an UpscaledView, so only the small
+ * image is in memory and the full size one is scaled a row at a time as it's saved.
+ * <br>
+ * Compilation:  javac ExpandImage.java <br>
+ * Execution:    java ExpandImage input String, resolution_coefficient int    <br>
+ * <br>
+ * Commandline arguments:
+ *             args[0] input String, an image or a folder of images saved with the record_scale option.
+ *             args[1] resolution_coefficient int, the scale to use instead of the recorded one. Needed for images without one.
+ *             Each image is saved next to the original with "_expanded" added to its name.
+ */
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+public final class ExpandImage {
+
+    private ExpandImage(){}
+
+    /**
+     * Scales one image up and saves it.
+     * @param input File, the image at the lowered resolution.
+     * @param output File, where the full size image is saved.
+     * @param resolution_coefficient int, the scale, or 0 to use the one recorded with the image.
+     * @throws IOException if the image can't be read or written, or doesn't have a scale.
+     */
+    public static void expand(File input, File output, int resolution_coefficient) throws IOException{
+        int scale = resolution_coefficient > 0 ? resolution_coefficient : ScaleMetadata.read(input);
+        if (scale <= 0){
+            throw new IOException(String.format("%s has no recorded scale, pass one in", input));
+        }
+        BufferedImage image = ImageIO.read(input);
+        if (image == null){
+            throw new IOException(String.format("Not a readable image: %s", input));
+        }
+        String name = output.getName();
+        String format = name.substring(name.lastIndexOf('.') + 1);
+        if (!ImageIO.write(new UpscaledView(image, scale), format, output)){
+            throw new IOException(String.format("No writer for %s", output));
+        }
+    }
+
+    //leaves out sidecars and images this has already expanded.
+    private static boolean isLowered(File file){
+        String name = file.getName();
+        return file.isFile() && !name.endsWith(ScaleMetadata.SIDECAR_EXTENSION) && !name.contains("_expanded.");
+    }
+
+    //the input's name with _expanded before the extension.
+    private static File expandedName(File input){
+        String path = input.getPath();
+        int period = path.lastIndexOf('.');
+        return new File(path.substring(0, period) + "_expanded" + path.substring(period));
+    }
+
+    /**
+     * Passes in the commandline arguments and expands an image or every image in a folder.
+     * @param args String[], The arguments passed in from the commandline.
+     *             Args[0], The image or folder.
+     *             Args[1], The scale, if it isn't recorded.
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length == 0){
+            System.out.println("USAGE: java ExpandImage input resolution_coefficient");
+            return;
+        }
+        int resolution_coefficient = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+
+        File input = new File(args[0]);
+        File[] files = input.isDirectory() ? input.listFiles(ExpandImage::isLowered) : new File[]{input};
+        Arrays.sort(files);
+        for (File file : files){
+            if (file.getName().lastIndexOf('.') < 0){
+                continue;
+            }
+            try {
+                expand(file, expandedName(file), resolution_coefficient);
+            } catch (IOException | RuntimeException e) {
+                System.err.println(String.format("%s: %s%n", file, e));
+            }
+        }
+    }
+}
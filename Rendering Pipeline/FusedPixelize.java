@@ -0,0 +1,202 @@
+/**
+ * Runs the whole Pixelize pipeline in one pass over the image, without making an image for each stage in between.
+ * For each block of the original image it takes the mean color like DownscaleImage, chromakeys it like GreenScreen, picks its palette color with the
+ * ReducePalette passed in, and writes the finished block straight into the output like UpscaleImage.
+ * <br>
+ * The output is exactly the same as running the stages one after another. The stages write each result into an image of the original's type and read
+ * it back, so this only runs on the image types where that doesn't change the color, canFuse checks for those. Anything else goes through the stages.
+ * With the indexed option, each block's palette index is written instead of its color, so the full color image is never made.
+ * <br>
+ * This file has no testing functionality. Running it from the terminal will do nothing.
+ */
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+public class FusedPixelize extends ImageEditParent{
+
+    /**
+     * The constructor of the FusedPixelize object. Runs the fuse function with the desired parameters.
+     * @param original BufferedImage, the original image that this object edits.
+     * @param resolution_coefficient int, the amount of downscaling and upscaling that will happen to the image.
+     * @param do_not_upscale boolean, whether the image is left at the lowered resolution.
+     * @param chromakey boolean, whether the image is chromakeyed after the resolution is reduced.
+     * @param reduce ReducePalette, the palette reducer that picks each block's color, made with the constructor that doesn't filter an image.
+     * @param options PixelizeOptions, the optional settings for this run.
+     */
+    public FusedPixelize(BufferedImage original, int resolution_coefficient, boolean do_not_upscale, boolean chromakey, ReducePalette reduce, PixelizeOptions options){
+        this(original, resolution_coefficient, do_not_upscale, chromakey, reduce, options, null);
+    }
+
+    /**
+     * The constructor of the FusedPixelize object for one frame of a sequence. The blocks that have the same mean as in the last frame
+     * reuse the color they got then, see CellCache.
+     * @param original BufferedImage, the original image that this object edits.
+     * @param resolution_coefficient int, the amount of downscaling and upscaling that will happen to the image.
+     * @param do_not_upscale boolean, whether the image is left at the lowered resolution.
+     * @param chromakey boolean, whether the image is chromakeyed after the resolution is reduced.
+     * @param reduce ReducePalette, the palette reducer that picks each block's color, made with the constructor that doesn't filter an image.
+     * @param options PixelizeOptions, the optional settings for this run.
+     * @param cache CellCache, the blocks of the last frame, or null to pick every block.
+     */
+    public FusedPixelize(BufferedImage original, int resolution_coefficient, boolean do_not_upscale, boolean chromakey, ReducePalette reduce, PixelizeOptions options, CellCache cache){
+        ChromaKey key = chromakey ? ChromaKey.fromOptions(options) : null;
+        final_image = fuse(original, resolution_coefficient, do_not_upscale, key, reduce, DownscaleImage.isBox(options), options.indexed, options.threads, cache);
+    }
+
+    /**
+     * Checks whether an image can go through the fused pass and still come out the same as going through the stages.
+     * @param original BufferedImage, the original image.
+     * @return can_fuse boolean, true if the fused pass gives the same image.
+     */
+    public static boolean canFuse(BufferedImage original){
+        int type = original.getType();
+        return type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_BGR
+                || type == BufferedImage.TYPE_4BYTE_ABGR || type == BufferedImage.TYPE_3BYTE_BGR;
+    }
+
+    /**
+     * Pixelizes the original image one row of blocks at a time, with the rows of blocks spread over several threads.
+     * @param original BufferedImage, the original image that this edits.
+     * @param resolution_coefficient int, the amount of downscaling and upscaling that will happen to the image.
+     * @param do_not_upscale boolean, whether the image is left at the lowered resolution.
+     * @param key ChromaKey, how the image is chromakeyed after the resolution is reduced, or null if it isn't.
+     * @param reduce ReducePalette, the palette reducer that picks each block's color.
+     * @param box boolean, whether the downscale uses box windows instead of centred ones.
+     * @param indexed boolean, whether the blocks' palette indexes are written instead of their colors, for an indexed image.
+     * @param parallelism int, the number of threads the rows of blocks are spread over.
+     * @param cache CellCache, the blocks of the last frame, or null.
+     * @return duplicate BufferedImage, the pixelized image, packed if it's indexed and the palette fits, see Palette.indexedImage.
+     */
+    private BufferedImage fuse(BufferedImage original, int resolution_coefficient, boolean do_not_upscale, ChromaKey key, ReducePalette reduce, boolean box, boolean indexed, int parallelism, CellCache cache){
+        int width = original.getWidth();
+        int height = original.getHeight();
+        int[] pixels = readPixels(original);
+
+        //the downscaled size, including the extra blocks DownscaleImage leaves blank.
+        int cells_wide = DownscaleImage.cellCount(width, resolution_coefficient, box);
+        int cells_high = DownscaleImage.cellCount(height, resolution_coefficient, box);
+        //a blank block reads back as transparent black if the original has alpha and as opaque black if it doesn't.
+        int blank = original.getColorModel().hasAlpha() ? 0 : 0xFF000000;
+
+        int block = do_not_upscale ? 1 : resolution_coefficient;
+        int duplicate_width = cells_wide * block;
+        //an indexed image only needs a byte for each pixel until it's packed.
+        int[] duplicate = indexed ? null : new int[duplicate_width * cells_high * block];
+        byte[] indexes = indexed ? new byte[duplicate_width * cells_high * block] : null;
+        Object out = indexed ? indexes : duplicate;
+        int clear = indexed ? reduce.palette.transparentPixelIndex() : reduce.transARGB;
+
+        if (cache != null){
+            cache.startFrame(cells_wide, cells_high);
+        }
+
+        //the bands are rows of blocks, which is what the reducer sees as rows.
+        RowBands.run(cells_high, parallelism, (first_row, end_row) -> {
+            int[] sums = new int[DownscaleImage.sumsLength(width)];
+            int[] means = new int[(width + resolution_coefficient - 1) / resolution_coefficient];
+            int reused = 0;
+            for (int cell_row = first_row; cell_row < end_row; cell_row++) {
+                reused += pixelizeCellRow(pixels, 0, width, height, cell_row, resolution_coefficient, box, blank, key, reduce, indexed, clear, cache,
+                        sums, means, out, cell_row * block * duplicate_width, cells_wide, block);
+            }
+            if (cache != null){
+                cache.countReused(reused);
+            }
+        });
+
+        if (cache != null){
+            cache.finishFrame();
+        }
+
+        if (indexed){
+            return reduce.palette.indexedImage(indexes, duplicate_width, cells_high * block, true);
+        }
+        //GreenScreen always hands on a TYPE_4BYTE_ABGR image, otherwise every stage keeps the original's type.
+        int type = key != null ? BufferedImage.TYPE_4BYTE_ABGR : original.getType();
+        return writePixels(duplicate, duplicate_width, cells_high * block, type);
+    }
+
+    /**
+     * Pixelizes one row of blocks, the way both the fused pass and StripPixelize do it. Each block gets the mean of its window, is chromakeyed,
+     * gets its palette color, and is written block times across and block rows down.
+     * @param pixels int[], the rows of the original the row of blocks needs, in packed ARGB format.
+     * @param first_row int, the row of the original that pixels starts at.
+     * @param width int, the width of the original.
+     * @param height int, the height of the whole original, not just the rows in pixels.
+     * @param cell_row int, the row of blocks, counted from the top of the whole image.
+     * @param resolution_coefficient int, the amount of downscaling that happens to the image.
+     * @param box boolean, whether the downscale uses box windows instead of centred ones.
+     * @param blank int, the color of the extra blocks past the edge of the original.
+     * @param key ChromaKey, how the blocks are chromakeyed, or null if they aren't.
+     * @param reduce ReducePalette, the palette reducer that picks each block's color.
+     * @param indexed boolean, whether the blocks' palette indexes are written instead of their colors.
+     * @param clear int, what's written for a transparent block, a color or an index.
+     * @param cache CellCache, the blocks of the last frame, or null.
+     * @param sums int[], working space for the downscale, DownscaleImage.sumsLength(width) long.
+     * @param means int[], working space for the downscale, a block's worth of the original's width long.
+     * @param out Object, the output, an int[] or a byte[] of indexes.
+     * @param out_offset int, where the row of blocks starts in out.
+     * @param cells_wide int, the number of blocks across, including the extra ones.
+     * @param block int, how many pixels across and down each block is written as.
+     * @return reused int, how many of the blocks were reused from the cache.
+     */
+    static int pixelizeCellRow(int[] pixels, int first_row, int width, int height, int cell_row, int resolution_coefficient, boolean box, int blank,
+                               ChromaKey key, ReducePalette reduce, boolean indexed, int clear, CellCache cache, int[] sums, int[] means,
+                               Object out, int out_offset, int cells_wide, int block){
+        int row = cell_row * resolution_coefficient;
+        int out_width = cells_wide * block;
+        int reused = 0;
+        //downscale, DownscaleImage hands the original back untouched when the coefficient is 1.
+        int means_used = 0;
+        if (resolution_coefficient == 1){
+            System.arraycopy(pixels, (row - first_row) * width, means, 0, width);
+            means_used = width;
+        } else if (row < height){
+            DownscaleImage.meanRow(pixels, first_row, width, height, cell_row, resolution_coefficient, box, sums, means);
+            means_used = means.length;
+        }
+
+        for (int cell_col = 0; cell_col < cells_wide; cell_col++) {
+            int mean = cell_col < means_used ? means[cell_col] : blank;
+            int cell = cell_row * cells_wide + cell_col;
+            int rgb = mean;
+
+            if (cache != null && cache.unchanged(cell, mean)){
+                //the same block as last frame, so it gets the same color, or the same index for an indexed image.
+                rgb = cache.color(cell);
+                reused++;
+            } else {
+                //chromakey
+                if (key != null){
+                    rgb = key.apply(rgb);
+                }
+
+                //reduce palette
+                if ((rgb >>> 24) > 127) {
+                    int index = reduce.pickColor(rgb, cell_row, cell_col);
+                    rgb = indexed ? index : reduce.palette_argb[index];
+                } else {
+                    rgb = clear;
+                }
+
+                if (cache != null){
+                    cache.store(cell, mean, rgb);
+                }
+            }
+
+            //upscale, only the first row of the block is written here.
+            int start = out_offset + cell_col * block;
+            if (out instanceof byte[]){
+                Arrays.fill((byte[])out, start, start + block, (byte)rgb);
+            } else {
+                Arrays.fill((int[])out, start, start + block, rgb);
+            }
+        }
+        //the rest of the rows in the block are copies of the first.
+        for (int sRow = 1; sRow < block; sRow++){
+            System.arraycopy(out, out_offset, out, out_offset + sRow * out_width, out_width);
+        }
+        return reused;
+    }
+}
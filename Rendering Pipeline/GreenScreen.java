@@ -1,30 +1,29 @@
-import java.awt.*;
 import java.awt.image.*;
 import javax.imageio.*;
 import java.io.File;
 import java.io.IOException;
-import java.io.BufferedReader;
-import java.io.FileReader;
-import static java.lang.Math.abs;
 
 public class GreenScreen extends ImageEditParent{
 
-    protected Color removed_color = new Color(0,255, 0, 255);
-    protected Color transparent = new Color(0, 0, 0, 0);
-    protected int transARGB = transparent.getRGB();
     protected BufferedImage original_image;
+    protected int parallelism = 1;
+    //the key color, tolerance, soft edge and spill settings, see ChromaKey.
+    protected ChromaKey key;
 
     public GreenScreen(BufferedImage original, boolean do_not_visualize){
-        original_image = original;
+        this(original, do_not_visualize, new PixelizeOptions());
+    }
 
-        original_image = convertType(original);
+    public GreenScreen(BufferedImage original, boolean do_not_visualize, PixelizeOptions options){
+        parallelism = options.threads;
+        key = ChromaKey.fromOptions(options);
+        original_image = original;
 
+        //the pixels are read straight from the original whatever its type, and written straight into a TYPE_4BYTE_ABGR image.
         final_image = removeColor();
 
-        final_image = convertType(final_image);
-
         if (!do_not_visualize) {
-            displayImage(final_image, "Chromakeyed image");
+            ImageViewer.displayImage(final_image, "Chromakeyed image");
 
             //only happens if this is run directly from the console
             saveFile("green_screened_image.png", final_image);
@@ -37,70 +36,24 @@ public class GreenScreen extends ImageEditParent{
 
     }
 
-    protected BufferedImage convertType(BufferedImage original){
-        BufferedImage convertedImg = new BufferedImage(original.getWidth(), original.getHeight(), BufferedImage.TYPE_4BYTE_ABGR);
-        convertedImg.getGraphics().drawImage(original, 0, 0, null);
-        return convertedImg;
-    }
-
     /*
-    This is the chromakey function, removes the specified color which is universally green so far.
-
-
-    TODO: support other colors
+    This is the chromakey function, removes the key color, green unless the options say otherwise, in one pass over the rows.
+    Pixels close enough to the key are made fully transparent, and with a soft edge the ones a bit further out are made partially transparent.
      */
     protected BufferedImage removeColor() {
-        Color[][] color_grid = new Color[original_image.getHeight()][original_image.getWidth()];
-        BufferedImage duplicate = new BufferedImage(original_image.getWidth(), original_image.getHeight(), BufferedImage.TYPE_4BYTE_ABGR);
-        int rgb, current_red, current_green, current_blue;
-        for (int row = 0; row < original_image.getHeight(); row++) {
-            for (int col = 0; col < original_image.getWidth(); col++) {
-                //gets each color in the current pixel
-                rgb = original_image.getRGB(col, row);
-                Color colorIn = new Color(rgb);
-                current_red = colorIn.getRed();
-                current_green = colorIn.getGreen();
-                current_blue = colorIn.getBlue();
-
-                //scores them based on how similar they are to the chromakeyed color.
-                double score;
-                double red_score;
-                double green_score;
-                double blue_score;
-
-                red_score = 255 - abs(current_red);
-                green_score = 255 - abs(removed_color.getGreen() - current_green);
-                blue_score = 255 - abs(current_blue);
-
-                score = red_score + green_score + blue_score;
-
-                score = score/3;
-
-                //System.out.println(red_score);
-                //System.out.println(blue_score);
-                //System.out.println(green_score);
-                //System.out.println("");
-                //sets transparency if it is close enough to color, but has 2 settings. Make partially transparent, and make fully transparent.
-                //will set full transparency if the color is below 150 in the simmilarity score, will set partial transparency based on how green it was if the color is below 200 but above 150
-                if (score < 145) {
-                    duplicate.setRGB(col, row, rgb);
-                } /*else if (score < 200) {
-                    int alpha_score = (int)green_score - ((int)red_score + (int)blue_score)*2;
-                    if (alpha_score <= 0){alpha_score = 0;}
-                    if (alpha_score >= 255){alpha_score = 255;}
-
-                    //System.out.println("");
-                    //System.out.println(alpha_score);
-                    Color softChromaColor = new Color(current_red, abs(current_green - (int)green_score), current_blue, 255 - (alpha_score));
-                    int softChromaRGB = softChromaColor.getRGB();
-                    duplicate.setRGB(col, row, softChromaRGB);
-                } */else {
-                        duplicate.setRGB(col, row, transARGB);
-                    }
+        int width = original_image.getWidth();
+        int height = original_image.getHeight();
+        int[] pixels = readPixels(original_image);
+        int[] duplicate = new int[width * height];
+        RowBands.run(height, parallelism, (first_row, end_row) -> {
+            for (int row = first_row; row < end_row; row++) {
+                int offset = row * width;
+                for (int col = 0; col < width; col++) {
+                    duplicate[offset + col] = key.apply(pixels[offset + col]);
                 }
-
             }
-        return duplicate;
+        });
+        return writePixels(duplicate, width, height, BufferedImage.TYPE_4BYTE_ABGR);
     }
 
     /**
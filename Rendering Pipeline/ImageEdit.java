@@ -1,10 +1,10 @@
 /**
- * The interface for image editing objects. Contains output_image and display image as those are the only required fields of an image editing object.
+ * The interface for image editing objects. Contains output_image as that is the only required field of an image editing object.
+ * Displaying images is left to ImageViewer, so nothing that only edits images needs a display.
  * <br>
  * @author Nicholas Floyd, 2021
  */
 
-import javax.swing.*;
 import java.awt.image.BufferedImage;
 
 interface ImageEdit{
@@ -13,12 +13,4 @@ interface ImageEdit{
      * @return final_imageBufferedImage, the filtered image for the
      */
     BufferedImage output_image();
-
-    /**
-     * Displays the image for a image edit object.
-     * @param img BufferedImage, the image you'd like to display.
-     * @param title String, the title of the image you're displaying.
-     * @return window JFrame, A displayed frame of the image.
-     */
-    JFrame displayImage(BufferedImage img, String title );
 }
\ No newline at end of file
@@ -1,11 +1,15 @@
 /**
- * The abstract parent class for every image editing class in this program. This only has an output for the image and a display function.
+ * The abstract parent class for every image editing class in this program. This has an output for the image
+ * and the pixel access that every filter shares. Images are displayed with ImageViewer.
+ * <br>
+ * Filters read an image into one int[] of packed ARGB pixels with readPixels, work on that array directly, and turn the result back into an image with writePixels.
+ * getRGB and setRGB convert the color of every pixel one call at a time, while these only convert once for the whole image,
+ * and not at all for the common image types where the array can be copied straight into or out of the raster.
  * <br>
  * @author Nicholas Floyd, 2021
  */
 
-import javax.swing.*;
-import java.awt.image.BufferedImage;
+import java.awt.image.*;
 
 public abstract class ImageEditParent implements ImageEdit{
     protected BufferedImage final_image;
@@ -22,28 +26,136 @@ public abstract class ImageEditParent implements ImageEdit{
         return final_image;
     }
     /**
-     * Displays the image with whatever title specified.
-     * @param img BufferedImage, the image you'd like to display.
-     * @param title String, the title of the image you're displaying.
-     * @return window JFrame, A displayed frame of the image.
+     * Reads every pixel of an image into one array of packed ARGB ints, the format getRGB returns, one row after another.
+     * If the image is already TYPE_INT_ARGB the array backing the image is returned as is, so it must only be read, never written to.
+     * @param img BufferedImage, the image being read.
+     * @return pixels int[], width * height packed ARGB pixels.
      */
-    public JFrame displayImage(BufferedImage img, String title ){
-        // Create the graphics window
-        JFrame window = new JFrame();
-        window.setTitle( title );
-        window.setSize( img.getWidth()+20, img.getHeight()+40 );
-
-        // Center the image in the graphics window
-        ImageIcon icon = new ImageIcon( img );
-        JLabel label = new JLabel( icon );
-        window.add( label );
-
-        // Make the graphics window visible until the user closes it (which also ends the program)
-        window.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE); //JFrame.EXIT_ON_CLOSE);
-        window.setVisible(true);
-
-        // Return a reference to the display window, so that we can manipulate it in the future, if we like.
-        return window;
+    protected static int[] readPixels(BufferedImage img){
+        int width = img.getWidth();
+        int height = img.getHeight();
+        if (!isPlainRaster(img)){
+            return img.getRGB(0, 0, width, height, null, 0, width);
+        }
+
+        int type = img.getType();
+        if (type == BufferedImage.TYPE_INT_ARGB){
+            return pixelData(img);
+        }
+
+        int[] pixels = new int[width * height];
+        if (type == BufferedImage.TYPE_INT_RGB){
+            int[] data = pixelData(img);
+            for (int i = 0; i < pixels.length; i++){
+                pixels[i] = 0xFF000000 | (data[i] & 0xFFFFFF);
+            }
+        } else if (type == BufferedImage.TYPE_4BYTE_ABGR){
+            byte[] data = ((DataBufferByte)img.getRaster().getDataBuffer()).getData();
+            for (int i = 0, b = 0; i < pixels.length; i++, b += 4){
+                pixels[i] = ((data[b] & 0xFF) << 24) | ((data[b + 3] & 0xFF) << 16) | ((data[b + 2] & 0xFF) << 8) | (data[b + 1] & 0xFF);
+            }
+        } else {
+            byte[] data = ((DataBufferByte)img.getRaster().getDataBuffer()).getData();
+            for (int i = 0, b = 0; i < pixels.length; i++, b += 3){
+                pixels[i] = 0xFF000000 | ((data[b + 2] & 0xFF) << 16) | ((data[b + 1] & 0xFF) << 8) | (data[b] & 0xFF);
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * Turns an array of packed ARGB pixels into an image of the type asked for, the same as calling setRGB for every pixel.
+     * TYPE_INT_ARGB images are built around the array without copying it, so the array shouldn't be changed afterwards.
+     * TYPE_CUSTOM can't be created directly, so those come out as TYPE_INT_ARGB.
+     * @param pixels int[], width * height packed ARGB pixels, one row after another.
+     * @param width int, the width of the image.
+     * @param height int, the height of the image.
+     * @param type int, the BufferedImage type of the image.
+     * @return img BufferedImage, the image holding the pixels.
+     */
+    protected static BufferedImage writePixels(int[] pixels, int width, int height, int type){
+        if (type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_CUSTOM){
+            DirectColorModel color_model = (DirectColorModel)ColorModel.getRGBdefault();
+            WritableRaster raster = Raster.createPackedRaster(new DataBufferInt(pixels, width * height), width, height, width, color_model.getMasks(), null);
+            return new BufferedImage(color_model, raster, false, null);
+        }
+
+        BufferedImage img = new BufferedImage(width, height, type);
+        if (type == BufferedImage.TYPE_INT_RGB){
+            int[] data = pixelData(img);
+            for (int i = 0; i < data.length; i++){
+                data[i] = pixels[i] & 0xFFFFFF;
+            }
+        } else if (type == BufferedImage.TYPE_4BYTE_ABGR){
+            byte[] data = ((DataBufferByte)img.getRaster().getDataBuffer()).getData();
+            for (int i = 0, b = 0; i < pixels.length; i++, b += 4){
+                int argb = pixels[i];
+                data[b] = (byte)(argb >>> 24);
+                data[b + 1] = (byte)argb;
+                data[b + 2] = (byte)(argb >> 8);
+                data[b + 3] = (byte)(argb >> 16);
+            }
+        } else if (type == BufferedImage.TYPE_3BYTE_BGR){
+            byte[] data = ((DataBufferByte)img.getRaster().getDataBuffer()).getData();
+            for (int i = 0, b = 0; i < pixels.length; i++, b += 3){
+                int argb = pixels[i];
+                data[b] = (byte)argb;
+                data[b + 1] = (byte)(argb >> 8);
+                data[b + 2] = (byte)(argb >> 16);
+            }
+        } else {
+            img.setRGB(0, 0, width, height, pixels, 0, width);
+        }
+        return img;
     }
-}
 
+    /**
+     * Returns the int[] backing a TYPE_INT_ARGB or TYPE_INT_RGB image. Writing to it changes the image.
+     * @param img BufferedImage, an image with an int raster.
+     * @return data int[], the pixels of the image, one row after another.
+     */
+    protected static int[] pixelData(BufferedImage img){
+        return ((DataBufferInt)img.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Checks whether an image is one of the types readPixels can copy straight out of, laid out as one tightly packed block with nothing before it.
+     * Images made with getSubimage or with unusual rasters fall back to getRGB.
+     * @param img BufferedImage, the image being checked.
+     * @return plain boolean, true if the raster can be read directly.
+     */
+    protected static boolean isPlainRaster(BufferedImage img){
+        int type = img.getType();
+        int bytes_per_pixel;
+        if (type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB){
+            bytes_per_pixel = 1;
+        } else if (type == BufferedImage.TYPE_4BYTE_ABGR){
+            bytes_per_pixel = 4;
+        } else if (type == BufferedImage.TYPE_3BYTE_BGR){
+            bytes_per_pixel = 3;
+        } else {
+            return false;
+        }
+
+        WritableRaster raster = img.getRaster();
+        if (raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0 || raster.getDataBuffer().getOffset() != 0){
+            return false;
+        }
+        SampleModel sample_model = raster.getSampleModel();
+        if (sample_model instanceof SinglePixelPackedSampleModel){
+            return ((SinglePixelPackedSampleModel)sample_model).getScanlineStride() == img.getWidth();
+        }
+        if (sample_model instanceof PixelInterleavedSampleModel){
+            int[] offsets = ((PixelInterleavedSampleModel)sample_model).getBandOffsets();
+            //the standard ABGR and BGR layouts store the bands in reverse order.
+            for (int band = 0; band < offsets.length; band++){
+                if (offsets[band] != offsets.length - 1 - band){
+                    return false;
+                }
+            }
+            return ((PixelInterleavedSampleModel)sample_model).getPixelStride() == bytes_per_pixel
+                    && ((PixelInterleavedSampleModel)sample_model).getScanlineStride() == img.getWidth() * bytes_per_pixel;
+        }
+        return false;
+    }
+}
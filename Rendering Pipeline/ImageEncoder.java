@@ -0,0 +1,106 @@
+/**
+ * The interface for objects that save pixelized images, picked by the encoder option. Saving is the slowest part of a run after filtering,
+ * so there are a few ways to do it that trade file size for speed. Every encoder writes through a buffered FileChannel, and the ones that
+ * need working space keep it for each thread, so the save workers don't build it again for every image.
+ * <br>
+ * The encoders:
+ *             "imageio" = the ImageIO writer for the file's format, the way images have always been saved (default). PNG takes the compression level.
+ *             "png" = PngEncoder, which takes the compression level and the filter. Every other format is saved with ImageIO.
+ *             "qoi" = QoiEncoder, the Quite OK Image format, which saves many times faster than PNG for files that are only kept until the next step.
+ * Any of them can record a scale with the image, see ScaleMetadata.
+ * <br>
+ * This file has no testing functionality. Running it from the terminal will do nothing.
+ */
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DirectColorModel;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+
+interface ImageEncoder{
+    /**
+     * Saves an image.
+     * @param image RenderedImage, the image being saved. Rows are asked for one at a time, so views like UpscaledView are never built whole.
+     * @param format String, the format the file name asks for, like "png".
+     * @param file File, where the image is saved, already named with extension(format).
+     * @param scale int, the scale recorded with the image, or 0 for none, see ScaleMetadata.
+     * @return written boolean, false if there's no way to save the image in that format, like ImageIO.write.
+     * @throws IOException if the file can't be written.
+     */
+    boolean write(RenderedImage image, String format, File file, int scale) throws IOException;
+
+    /**
+     * The file extension an image asked for in a format is saved with.
+     * @param format String, the format the file name asks for.
+     * @return extension String, the extension of the file that's written.
+     */
+    default String extension(String format){
+        return format;
+    }
+
+    /**
+     * Builds the encoder set by the encoder, png_compression and png_filter options.
+     * @param options PixelizeOptions, the optional settings for this run.
+     * @return encoder ImageEncoder, the encoder.
+     */
+    static ImageEncoder create(PixelizeOptions options){
+        if (options.encoder.equals("png")){
+            return new PngEncoder(options.png_compression, options.png_filter);
+        } else if (options.encoder.equals("qoi")){
+            return new QoiEncoder();
+        } else if (options.encoder.equals("imageio")){
+            return new ImageIOEncoder(options.png_compression);
+        }
+        throw new IllegalArgumentException(String.format("Unknown encoder \"%s\", the encoders are: imageio, png, qoi", options.encoder));
+    }
+
+    /**
+     * Reads one row of an image as packed ARGB pixels, whatever its color model.
+     * @param image RenderedImage, the image.
+     * @param row int, the row.
+     * @param argb int[], filled with the row's pixels, at least the width of the image.
+     */
+    static void argbRow(RenderedImage image, int row, int[] argb){
+        int width = image.getWidth();
+        if (image instanceof BufferedImage){
+            ((BufferedImage)image).getRGB(0, row, width, 1, argb, 0, width);
+            return;
+        }
+        Raster raster = image.getData(new Rectangle(image.getMinX(), row, width, 1));
+        ColorModel color_model = image.getColorModel();
+        int x = image.getMinX();
+        if (color_model instanceof IndexColorModel){
+            raster.getSamples(x, row, width, 1, 0, argb);
+            for (int col = 0; col < width; col++){
+                argb[col] = color_model.getRGB(argb[col]);
+            }
+        } else if (color_model instanceof DirectColorModel && raster.getTransferType() == DataBuffer.TYPE_INT
+                && isDefaultLayout((DirectColorModel)color_model)){
+            //the pixels are already packed the default way, except that an image without alpha leaves it out.
+            raster.getDataElements(x, row, width, 1, argb);
+            if (!color_model.hasAlpha()){
+                for (int col = 0; col < width; col++){
+                    argb[col] |= 0xFF000000;
+                }
+            }
+        } else {
+            Object pixel = null;
+            for (int col = 0; col < width; col++){
+                pixel = raster.getDataElements(x + col, row, pixel);
+                argb[col] = color_model.getRGB(pixel);
+            }
+        }
+    }
+
+    //whether the color model packs pixels the way the default ARGB one does, with or without alpha.
+    private static boolean isDefaultLayout(DirectColorModel color_model){
+        return color_model.getRedMask() == 0xFF0000 && color_model.getGreenMask() == 0xFF00 && color_model.getBlueMask() == 0xFF
+                && (!color_model.hasAlpha() || (color_model.getAlphaMask() == 0xFF000000 && !color_model.isAlphaPremultiplied()));
+    }
+}
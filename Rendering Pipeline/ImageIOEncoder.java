@@ -0,0 +1,99 @@
+/**
+ * Saves images with the ImageIO writer for their format, the same files ImageIO.write makes. Each thread keeps the writer it has used for
+ * each format and hands it the next image, instead of looking one up and making it again for every image.
+ * PNG files take a compression level, which is as much of the PNG writer as ImageIO lets be set, PngEncoder also sets the filter.
+ * <br>
+ * This file has no testing functionality. Running it from the terminal will do nothing.
+ */
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.RenderedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+
+public class ImageIOEncoder implements ImageEncoder{
+    //how much is gathered before it's written to the file.
+    static final int BUFFER_SIZE = 1 << 16;
+
+    private final int compression_level;
+    //each thread's writers by format. A writer can only write one image at a time, so they aren't shared.
+    private final ThreadLocal<Map<String, ImageWriter>> writers = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * The constructor of the ImageIOEncoder object.
+     * @param compression_level int, the PNG compression level from 0, none, to 9, the smallest, or -1 for the writer's own default.
+     */
+    public ImageIOEncoder(int compression_level){
+        this.compression_level = compression_level;
+    }
+
+    public boolean write(RenderedImage image, String format, File file, int scale) throws IOException{
+        ImageWriter writer = writers.get().computeIfAbsent(format.toLowerCase(Locale.ROOT), ImageIOEncoder::findWriter);
+        //ImageIO.write only uses a writer that can save the image, like the BMP writer can't save alpha.
+        if (writer == null || !writer.getOriginatingProvider().canEncodeImage(image)){
+            return false;
+        }
+
+        boolean png = ScaleMetadata.isPng(format);
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (png && compression_level >= 0){
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            if (param.getCompressionType() == null){
+                param.setCompressionType(param.getCompressionTypes()[0]);
+            }
+            //the PNG writer turns the quality back into a level by rounding down, so this aims at the middle of the level.
+            param.setCompressionQuality(Math.max(0f, 1f - (compression_level + 0.5f) / 9f));
+        }
+        IIOMetadata metadata = null;
+        if (scale > 0 && png){
+            metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), param);
+            ScaleMetadata.addPngText(metadata, scale);
+        }
+
+        try (OutputStream output = openBuffered(file);
+             ImageOutputStream stream = new MemoryCacheImageOutputStream(output)){
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, metadata), param);
+        } finally {
+            writer.reset();
+        }
+        if (scale > 0 && !png){
+            ScaleMetadata.writeSidecar(file, scale);
+        } else {
+            ScaleMetadata.removeSidecar(file);
+        }
+        return true;
+    }
+
+    private static ImageWriter findWriter(String format){
+        Iterator<ImageWriter> found = ImageIO.getImageWritersByFormatName(format);
+        return found.hasNext() ? found.next() : null;
+    }
+
+    /**
+     * Opens a file for writing through a buffered FileChannel, replacing anything already there.
+     * @param file File, the file.
+     * @return output OutputStream, the buffered stream into the file.
+     * @throws IOException if the file can't be opened.
+     */
+    static OutputStream openBuffered(File file) throws IOException{
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * Shows images in a window, for looking at each stage of the pipeline while it runs.
+ * This is the only class in the pipeline that uses Swing. The filters only call it when they are asked to visualize, so batch runs never load it
+ * and can run with java.awt.headless=true. If there is no display, the image is skipped with a message instead of throwing a HeadlessException.
+ * <br>
+ * This file has no testing functionality. Running it from the terminal will do nothing.
+ * <br>
+ * @author Nicholas Floyd, 2021
+ */
+
+import javax.swing.*;
+import java.awt.GraphicsEnvironment;
+import java.awt.image.BufferedImage;
+
+public class ImageViewer {
+    /**
+     * Displays the image with whatever title specified.
+     * @param img BufferedImage, the image you'd like to display.
+     * @param title String, the title of the image you're displaying.
+     * @return window JFrame, A displayed frame of the image, or null if there is no display to show it on.
+     */
+    public static JFrame displayImage(BufferedImage img, String title ){
+        if (GraphicsEnvironment.isHeadless()){
+            System.err.println(String.format("No display, not showing %s", title));
+            return null;
+        }
+
+        // Create the graphics window
+        JFrame window = new JFrame();
+        window.setTitle( title );
+        window.setSize( img.getWidth()+20, img.getHeight()+40 );
+
+        // Center the image in the graphics window
+        ImageIcon icon = new ImageIcon( img );
+        JLabel label = new JLabel( icon );
+        window.add( label );
+
+        // Make the graphics window visible until the user closes it (which also ends the program)
+        window.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE); //JFrame.EXIT_ON_CLOSE);
+        window.setVisible(true);
+
+        // Return a reference to the display window, so that we can manipulate it in the future, if we like.
+        return window;
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * Finds the closest color in a palette with a k-d tree over the palette colors in RGB space.
+ * Each node splits the colors below it in half along whichever channel they are most spread out in, so a search only has to
+ * look at the few colors near the one being matched instead of the whole palette. This pays off on large palettes.
+ * <br>
+ * Distances are the same sum of channel differences that ReducePalette scores with, and ties go to the earlier palette color,
+ * so the results always match scoring every color.
+ * <br>
+ * This file has no testing functionality. Running it from the terminal will do nothing.
+ */
+
+public class KdTreeColorSearch implements ColorSearch{
+    //leaves hold up to this many colors, which get scored one after another like the linear search.
+    protected static final int LEAF_SIZE = 8;
+
+    protected int[] palette_red;
+    protected int[] palette_green;
+    protected int[] palette_blue;
+
+    //the palette indexes sorted into tree order, each leaf covers one run of this array.
+    protected int[] tree_order;
+    //the tree is stored in arrays. node_axis is the channel a node splits on (0 red, 1 green, 2 blue), or -1 for a leaf.
+    protected int[] node_axis;
+    protected int[] node_split;
+    protected int[] node_left;
+    protected int[] node_right;
+    protected int[] node_start;
+    protected int[] node_end;
+    protected int root;
+    private int nodes_used = 0;
+
+    /**
+     * The constructor of the KdTreeColorSearch object. Takes the palette's channels and builds the tree.
+     * @param palette Palette, the palette that colors will be matched against.
+     */
+    public KdTreeColorSearch(Palette palette){
+        int palette_size = palette.size();
+        palette_red = palette.redArray();
+        palette_green = palette.greenArray();
+        palette_blue = palette.blueArray();
+        tree_order = new int[palette_size];
+        for (int i = 0; i < palette_size; i++){
+            tree_order[i] = i;
+        }
+
+        int max_nodes = 2 * palette_size + 1;
+        node_axis = new int[max_nodes];
+        node_split = new int[max_nodes];
+        node_left = new int[max_nodes];
+        node_right = new int[max_nodes];
+        node_start = new int[max_nodes];
+        node_end = new int[max_nodes];
+        root = buildNode(0, palette_size);
+    }
+
+    /**
+     * Builds the subtree for tree_order[from, to) and returns its node.
+     * @param from int, the first index of the range.
+     * @param to int, one past the last index of the range.
+     * @return node int, the node at the root of the subtree.
+     */
+    private int buildNode(int from, int to){
+        int node = nodes_used;
+        nodes_used += 1;
+        node_start[node] = from;
+        node_end[node] = to;
+        if (to - from <= LEAF_SIZE){
+            node_axis[node] = -1;
+            return node;
+        }
+
+        //splits along the channel with the widest range.
+        int axis = 0;
+        int widest = -1;
+        for (int channel = 0; channel < 3; channel++){
+            int low = 255;
+            int high = 0;
+            for (int i = from; i < to; i++){
+                int value = channelValue(tree_order[i], channel);
+                low = Math.min(low, value);
+                high = Math.max(high, value);
+            }
+            if (high - low > widest){
+                widest = high - low;
+                axis = channel;
+            }
+        }
+
+        //an insertion sort is plenty for palette sized lists.
+        for (int i = from + 1; i < to; i++){
+            int moving = tree_order[i];
+            int j = i - 1;
+            while (j >= from && channelValue(tree_order[j], axis) > channelValue(moving, axis)){
+                tree_order[j + 1] = tree_order[j];
+                j--;
+            }
+            tree_order[j + 1] = moving;
+        }
+
+        //everything left of middle is at or below the split and everything from middle on is at or above it.
+        int middle = (from + to) / 2;
+        node_axis[node] = axis;
+        node_split[node] = channelValue(tree_order[middle], axis);
+        node_left[node] = buildNode(from, middle);
+        node_right[node] = buildNode(middle, to);
+        return node;
+    }
+
+    private int channelValue(int index, int channel){
+        if (channel == 0){
+            return palette_red[index];
+        } else if (channel == 1){
+            return palette_green[index];
+        }
+        return palette_blue[index];
+    }
+
+    public int nearest(int rgb){
+        return nearestBefore(rgb, palette_red.length);
+    }
+
+    public int nearestBefore(int rgb, int limit){
+        long best_key = search(root, (rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF, limit, Long.MAX_VALUE, 0, 0, 0);
+        return (int)best_key;
+    }
+
+    /**
+     * Searches the subtree under node for a closer color than the best one found so far.
+     * Matches are packed into one long as (distance << 32) | index, so a lower key is always the better match, ties included.
+     * The offsets are how far the color is outside the region of the subtree along each channel, their sum is the closest any color
+     * under this node can possibly be. A subtree is skipped once that is further than the best match, equal distances are still searched
+     * since an earlier palette color in there would win the tie.
+     * @return best_key long, the packed best match after searching this subtree.
+     */
+    private long search(int node, int red, int green, int blue, int limit, long best_key, int red_offset, int green_offset, int blue_offset){
+        if (red_offset + green_offset + blue_offset > (best_key >>> 32)){
+            return best_key;
+        }
+
+        int axis = node_axis[node];
+        if (axis < 0){
+            for (int i = node_start[node]; i < node_end[node]; i++){
+                int index = tree_order[i];
+                if (index < limit){
+                    long distance = Math.abs(palette_red[index] - red) + Math.abs(palette_green[index] - green) + Math.abs(palette_blue[index] - blue);
+                    long key = (distance << 32) | index;
+                    if (key < best_key){
+                        best_key = key;
+                    }
+                }
+            }
+            return best_key;
+        }
+
+        int value = axis == 0 ? red : (axis == 1 ? green : blue);
+        int split = node_split[node];
+        int near_side = value < split ? node_left[node] : node_right[node];
+        int far_side = value < split ? node_right[node] : node_left[node];
+
+        best_key = search(near_side, red, green, blue, limit, best_key, red_offset, green_offset, blue_offset);
+
+        //crossing the split moves the offset along this channel out to the split.
+        int gap = Math.abs(value - split);
+        if (axis == 0){
+            best_key = search(far_side, red, green, blue, limit, best_key, Math.max(red_offset, gap), green_offset, blue_offset);
+        } else if (axis == 1){
+            best_key = search(far_side, red, green, blue, limit, best_key, red_offset, Math.max(green_offset, gap), blue_offset);
+        } else {
+            best_key = search(far_side, red, green, blue, limit, best_key, red_offset, green_offset, Math.max(blue_offset, gap));
+        }
+        return best_key;
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Finds the closest color in a palette by scoring every color in it, the same way ReducePalette always has.
+ * This is the simplest search and is the reference the other searches are checked against.
+ * <br>
+ * This file has no testing functionality. Running it from the terminal will do nothing.
+ */
+
+public class LinearColorSearch implements ColorSearch{
+    protected int[] palette_red;
+    protected int[] palette_green;
+    protected int[] palette_blue;
+
+    /**
+     * The constructor of the LinearColorSearch object. Takes the palette's channels.
+     * @param palette Palette, the palette that colors will be matched against.
+     */
+    public LinearColorSearch(Palette palette){
+        palette_red = palette.redArray();
+        palette_green = palette.greenArray();
+        palette_blue = palette.blueArray();
+    }
+
+    public int nearest(int rgb){
+        return nearestBefore(rgb, palette_red.length);
+    }
+
+    public int nearestBefore(int rgb, int limit){
+        int red = (rgb >> 16) & 0xFF;
+        int green = (rgb >> 8) & 0xFF;
+        int blue = rgb & 0xFF;
+        int best = 0;
+        int best_distance = Integer.MAX_VALUE;
+        for (int i = 0; i < limit; i++){
+            int distance = Math.abs(palette_red[i] - red) + Math.abs(palette_green[i] - green) + Math.abs(palette_blue[i] - blue);
+            if (distance < best_distance){
+                best_distance = distance;
+                best = i;
+            }
+        }
+        return best;
+    }
+}
@@ -1,43 +1,307 @@
+/**
+ * Pixelizes every image in a folder and saves them into the output_images folder with the same names.
+ * <br>
+ * The images go through three stages, reading, filtering, and saving, and each stage has its own pool of worker threads so one image can be saved while
+ * the next is filtered and the one after that is read. Only a set number of images are allowed in memory at once, so a folder of any size
+ * takes the same amount of memory. When it's done the throughput and the peak heap used, sampled through the run, are printed.
+ * With the strip option, each image is read, pixelized and saved a strip at a time by the save workers, see StripPixelize.
+ * Images are saved with the encoder option's ImageEncoder, and the time each stage took is printed at the end along with the throughput.
+ * Strip and lazy_upscale images are filtered as they're saved, so their saves are timed apart from the encode stage.
+ * With the cache option, an image whose file and settings are the same as when its output was last saved is skipped, see OutputCache.
+ * <br>
+ * Compilation:  javac MassPixelize.java <br>
+ * Execution:    java MassPixelize directory String, resolution_coefficient int, filterType String    <br>
+ * <br>
+ * commandline arguments:
+ *             args[0] directory String, the folder of images being filtered.
+ *             args[1] resolution_coefficient int, the amount of downscaling and upscaling that will happen to the images.
+ *             args[2] filterType String, the type of filtering that will be applied to the images, see Pixelize.
+ *             args[3] do_not_upscale boolean, whether the images are left at the lowered resolution.
+ *             args[4] chromakey boolean, whether the images are chromakeyed after the resolution is reduced.
+ *             Any arguments after these are key=value options, see PixelizeOptions. workers and queue set the size of the pools and how many images are held at once.
+ */
+
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 public class MassPixelize {
 
     int image_number = 0;
+
+    //the worker pools for each stage.
+    private ExecutorService read_pool;
+    private ExecutorService filter_pool;
+    private ExecutorService save_pool;
+    //one permit for every image allowed in memory, taken before an image is read and given back once it's saved or has failed.
+    private Semaphore in_flight;
+    //counted down once for every image, whether it was saved or not.
+    private CountDownLatch remaining;
+    private final AtomicInteger saved = new AtomicInteger();
+    //what each output was made from, or null if every image is made.
+    private OutputCache cache;
+    private final AtomicInteger skipped = new AtomicInteger();
+    //the scale saved with every image, or 0 for none, see ScaleMetadata.
+    private int recorded_scale = 0;
+    private ImageEncoder encoder;
+    //the time spent in each stage, added up over its workers.
+    private final AtomicLong read_nanos = new AtomicLong();
+    private final AtomicLong filter_nanos = new AtomicLong();
+    private final AtomicLong encode_nanos = new AtomicLong();
+    private final AtomicInteger encoded = new AtomicInteger();
+    //the saves of strip and lazy_upscale images, which pixelize or upscale the image as it's written, so they're kept apart from encode.
+    private final AtomicLong streamed_nanos = new AtomicLong();
+    //the most heap seen in use during the run. It's sampled, so a peak shorter than MEMORY_SAMPLE_MILLIS can be missed.
+    private static final long MEMORY_SAMPLE_MILLIS = 10;
+    private final AtomicLong peak_memory = new AtomicLong();
+
     public MassPixelize(String directory, int resolution_coefficient, String filterType, boolean do_not_upscale, boolean chromakey, boolean do_not_save){
+        this(directory, resolution_coefficient, filterType, do_not_upscale, chromakey, do_not_save, new PixelizeOptions());
+    }
+
+    public MassPixelize(String directory, int resolution_coefficient, String filterType, boolean do_not_upscale, boolean chromakey, boolean do_not_save, PixelizeOptions options){
 
         String[] fileNames = getFileNames(directory, true);
         String[] outputFileNames = getFileNames(directory, false);
-        BufferedImage[] filteredImages = generateImages(fileNames, resolution_coefficient, filterType, do_not_upscale, chromakey);
 
+        ScheduledExecutorService memory_sampler = startMemorySampler();
+        long start = System.nanoTime();
 
+        try {
+            generateImages(fileNames, outputFileNames, resolution_coefficient, filterType, do_not_upscale, chromakey, options);
+        } finally {
+            memory_sampler.shutdownNow();
+        }
+        sampleMemory();
 
-        massSaveFile(outputFileNames, filteredImages);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("Pixelized %d of %d images in %.2f s, %.2f images/s, peak memory %d MB",
+                saved.get(), fileNames.length, seconds, saved.get() / seconds, peak_memory.get() / (1024 * 1024)));
+        System.out.println(String.format("Stage times over all workers: read %.2f s, filter %.2f s, encode %.2f s, %.1f ms to encode each image",
+                read_nanos.get() / 1e9, filter_nanos.get() / 1e9, encode_nanos.get() / 1e9, encode_nanos.get() / 1e6 / Math.max(1, encoded.get())));
+        if (streamed_nanos.get() > 0){
+            System.out.println(String.format("Filtering and encoding together while saving strip and lazy_upscale images: %.2f s", streamed_nanos.get() / 1e9));
+        }
+        if (cache != null){
+            System.out.println(String.format("Skipped %d unchanged images", skipped.get()));
+        }
 
     }
 
-    private BufferedImage[] generateImages(String[] fileNames, int resolution_coefficient, String filterType, boolean do_not_upscale, boolean chromakey){
-        BufferedImage[] image_list = new BufferedImage[fileNames.length];
+    /**
+     * Reads, filters, and saves every image, with each stage running on its own pool of workers. Returns once every image has been saved or has failed.
+     * @param fileNames String[], the files being read.
+     * @param outputFileNames String[], where each filtered image is saved.
+     * @param resolution_coefficient int, the amount of downscaling and upscaling that will happen to the images.
+     * @param filterType String, the type of filtering that will be applied to the images.
+     * @param do_not_upscale boolean, whether the images are left at the lowered resolution.
+     * @param chromakey boolean, whether the images are chromakeyed after the resolution is reduced.
+     * @param options PixelizeOptions, the optional settings for this run.
+     */
+    private void generateImages(String[] fileNames, String[] outputFileNames, int resolution_coefficient, String filterType, boolean do_not_upscale, boolean chromakey, PixelizeOptions options){
+        int workers = Math.max(1, options.workers);
+        int queue = options.queue > 0 ? options.queue : 2 * workers;
+
+        //the processors are already shared between the images being filtered, so each image gets its share of the threads.
+        PixelizeOptions image_options = options.copy();
+        image_options.threads = Math.max(1, options.threads / workers);
+        //a generated palette is made once from the whole folder, so every image shares it.
+        if (!options.generate.isEmpty() && options.generated_palette == null){
+            image_options.generated_palette = PaletteGenerator.generate(fileNames, options);
+        }
+
+        //checked once here instead of failing every image.
+        if (options.indexed){
+            (image_options.generated_palette != null ? image_options.generated_palette : Palette.fromOptions(image_options)).requireIndexable("The indexed option");
+        }
+
+        read_pool = Executors.newFixedThreadPool(workers);
+        filter_pool = Executors.newFixedThreadPool(workers);
+        save_pool = Executors.newFixedThreadPool(workers);
+        in_flight = new Semaphore(queue);
+        recorded_scale = Pixelize.recordedScale(resolution_coefficient, do_not_upscale, options);
+        encoder = ImageEncoder.create(image_options);
+        remaining = new CountDownLatch(fileNames.length);
+        if (options.cache){
+            cache = new OutputCache(new File(OutputCache.FILE_NAME), resolution_coefficient, filterType, do_not_upscale, chromakey, image_options);
+        }
 
         //applies the filter based on file names
-        for (int i = 0; i < fileNames.length; i++){
-            Pixelize filter = new Pixelize(fileNames[i],  resolution_coefficient, filterType, do_not_upscale, chromakey, true, true);
-            BufferedImage filteredImage = filter.output_image();
-            image_list[i] = filteredImage;
+        try {
+            for (int i = 0; i < fileNames.length; i++){
+                final int index = i;
+                String outputFileName = savedName(outputFileNames[index]);
+                in_flight.acquire();
+                read_pool.execute(() -> readStage(fileNames[index], outputFileName, resolution_coefficient, filterType, do_not_upscale, chromakey, image_options));
+            }
+            remaining.await();
+            if (cache != null){
+                cache.save();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println(String.format("%s%n", e));
+        } catch (IOException e) {
+            System.err.println(String.format("Couldn't save the cache: %s%n", e));
+        } finally {
+            read_pool.shutdown();
+            filter_pool.shutdown();
+            save_pool.shutdown();
+        }
+
+    }
+
+    /**
+     * Reads one image and hands it to the filter workers, or skips it if the cache has it.
+     */
+    private void readStage(String fileName, String outputFileName, int resolution_coefficient, String filterType, boolean do_not_upscale, boolean chromakey, PixelizeOptions options){
+        long start = System.nanoTime();
+        //the image is finished here unless it was handed to the next stage, even if an Error like running out of memory is thrown.
+        boolean handed_on = false;
+        try {
+            //error diffusion needs the whole image, so it's read in whole even with the strip option.
+            boolean strip = options.strip > 0 && StripPixelize.canStrip(filterType);
+            String key = null;
+            byte[] input = null;
+            if (cache != null){
+                //the file is read once, for both the hash and the image, unless the image is read a strip at a time.
+                if (strip){
+                    key = cache.key(new File(fileName));
+                } else {
+                    input = Files.readAllBytes(new File(fileName).toPath());
+                    key = cache.key(input);
+                }
+                if (cache.unchanged(outputFileName, key)){
+                    skipped.incrementAndGet();
+                    return;
+                }
+            }
+            String image_key = key;
+
+            if (strip){
+                //the strips are read while the image is saved, so there's nothing for the filter workers to do.
+                ReducePalette reduce = Pixelize.colorPicker(filterType, Palette.fromOptions(options), options);
+                StripPixelize strips = new StripPixelize(new File(fileName), resolution_coefficient, do_not_upscale, chromakey, reduce, options);
+                save_pool.execute(() -> saveStrips(outputFileName, image_key, strips));
+                handed_on = true;
+                return;
+            }
+
+            BufferedImage original = input == null ? ImageIO.read(new File(fileName)) : ImageIO.read(new ByteArrayInputStream(input));
+            if (original == null){
+                System.err.println(String.format("Not a readable image: %s%n", fileName));
+                return;
+            }
+            filter_pool.execute(() -> filterStage(original, outputFileName, image_key, resolution_coefficient, filterType, do_not_upscale, chromakey, options));
+            handed_on = true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println(String.format("%s: %s%n", fileName, e));
+        } finally {
+            read_nanos.addAndGet(System.nanoTime() - start);
+            if (!handed_on){
+                finish();
+            }
+        }
+    }
+
+    /**
+     * Filters one image and hands it to the save workers.
+     */
+    private void filterStage(BufferedImage original, String outputFileName, String key, int resolution_coefficient, String filterType, boolean do_not_upscale, boolean chromakey, PixelizeOptions options){
+        long start = System.nanoTime();
+        boolean handed_on = false;
+        try {
+            //a lazy upscale keeps the image at the lowered resolution until it's saved, so the image waiting to be saved is small.
+            boolean lazy = options.lazy_upscale && !do_not_upscale;
+            Pixelize filter = new Pixelize(original, resolution_coefficient, filterType, do_not_upscale || lazy, chromakey, options);
+            RenderedImage filteredImage = filter.output_image();
+            if (lazy){
+                filteredImage = new UpscaledView(filter.output_image(), resolution_coefficient);
+            }
+            RenderedImage finishedImage = filteredImage;
+            filter_nanos.addAndGet(System.nanoTime() - start);
+            save_pool.execute(() -> saveStage(outputFileName, key, finishedImage, lazy));
+            handed_on = true;
+        } catch (RuntimeException e) {
+            System.err.println(String.format("%s: %s%n", outputFileName, e));
+        } finally {
+            if (!handed_on){
+                finish();
+            }
         }
+    }
 
-        return image_list;
+    /**
+     * Saves one image, records it in the cache, and lets the next one be read.
+     * @param streamed boolean, whether the image is pixelized or upscaled as it's saved, so the time isn't all encoding.
+     */
+    private void saveStage(String outputFileName, String key, RenderedImage filteredImage, boolean streamed){
+        try {
+            long start = System.nanoTime();
+            boolean written = saveFile(outputFileName, filteredImage);
+            if (streamed){
+                streamed_nanos.addAndGet(System.nanoTime() - start);
+            } else {
+                encode_nanos.addAndGet(System.nanoTime() - start);
+                encoded.incrementAndGet();
+            }
+            if (written){
+                saved.incrementAndGet();
+                if (cache != null){
+                    cache.record(outputFileName, key);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println(String.format("%s: %s%n", outputFileName, e));
+        } finally {
+            finish();
+        }
+    }
 
+    /**
+     * Saves one image that's pixelized a strip at a time as it's written, then closes its file.
+     */
+    private void saveStrips(String outputFileName, String key, StripPixelize strips){
+        try {
+            saveStage(outputFileName, key, strips, true);
+        } finally {
+            try {
+                strips.close();
+            } catch (IOException e) {
+                System.err.println(String.format("%s%n", e));
+            }
+        }
+    }
+
+    //marks an image as done, so its memory can go to the next image.
+    private void finish(){
+        in_flight.release();
+        remaining.countDown();
     }
 
     //gets the names of all the files as strings, not sure if I need to append them with anything yet to make sure the Pixelize program finds what it needs to.
     private String[] getFileNames(String directory, boolean is_input){
         //initializing the file names
         File folder = new File(directory);
-        File[] fileList = folder.listFiles();
+        File[] fileList = folder.listFiles(File::isFile);
+        if (fileList == null){
+            System.err.println(String.format("Not a readable directory: %s%n", directory));
+            return new String[0];
+        }
         String[] fileNames = new String[fileList.length];
         //changes the directory if it's being used for output
         if (!is_input){
@@ -45,31 +309,55 @@ public class MassPixelize {
         }
         //saves each file as it's directory in a list of strings.
         for (int i = 0; i < fileList.length; i++) {
-            if (fileList[i].isFile()) {
-                fileNames[i] = directory + "/" + fileList[i].getName();
-                System.out.println(fileNames[i]);
-            }
+            fileNames[i] = directory + "/" + fileList[i].getName();
+            System.out.println(fileNames[i]);
         }
 
         return fileNames;
     }
 
-    private void massSaveFile(String[] inFileName, BufferedImage[] filtered_image){
-        for (int i = 0; i < inFileName.length; i++) {
-            int period = inFileName[i].indexOf(".");
-            String fileExtension = inFileName[i].substring(period + 1);
-            //String copyFileName = inFileName[i].substring(0, period) + "_" + image_number + "." + fileExtension;
-            String copyFileName = inFileName[i].substring(0, period) + "." + fileExtension;
-            try {
-                File copiedFile = new File(copyFileName);
-                ImageIO.write(filtered_image[i], fileExtension, copiedFile);
-            } catch (IOException e) {
-                System.err.println(String.format("%s%n", e));
+    //the output name with the extension the encoder saves it with, which is the name the cache knows it by.
+    private String savedName(String outputFileName){
+        int period = outputFileName.indexOf(".");
+        return outputFileName.substring(0, period + 1) + encoder.extension(outputFileName.substring(period + 1));
+    }
+
+    private boolean saveFile(String inFileName, RenderedImage filtered_image){
+        int period = inFileName.indexOf(".");
+        String fileExtension = inFileName.substring(period + 1);
+        //String copyFileName = inFileName.substring(0, period) + "_" + image_number + "." + fileExtension;
+        String copyFileName = inFileName.substring(0, period) + "." + fileExtension;
+        try {
+            File copiedFile = new File(copyFileName);
+            if (!encoder.write(filtered_image, fileExtension, copiedFile, recorded_scale)){
+                System.err.println(String.format("No writer for %s%n", copyFileName));
+                return false;
             }
+            return true;
+        } catch (IOException e) {
+            System.err.println(String.format("%s%n", e));
+            return false;
         }
     }
 
+    //samples the heap used every MEMORY_SAMPLE_MILLIS on a daemon thread, keeping the most seen in peak_memory, until the sampler is shut down.
+    private ScheduledExecutorService startMemorySampler(){
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "memory sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(this::sampleMemory, 0, MEMORY_SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+        return sampler;
+    }
+
+    private void sampleMemory(){
+        peak_memory.accumulateAndGet(ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(), Math::max);
+    }
+
     public static void main(String[] args) {
+        //nothing is displayed in a mass run, so it never needs a display, which lets it run on machines without one.
+        System.setProperty("java.awt.headless", "true");
 
         // If the user misses a commandline argument, show them a helpful usage statement
         String usageStatement = "USAGE: java ImageFilter filePath"
@@ -102,7 +390,8 @@ public class MassPixelize {
         if (args.length > 4) {
             chromakey = Boolean.parseBoolean(args[4]);
         }
+        PixelizeOptions options = PixelizeOptions.parse(args, 5);
         //initializing the code
-        MassPixelize finished_image = new MassPixelize(fileName, resolution_coefficient, filterType, do_not_upscale, chromakey, true);
+        MassPixelize finished_image = new MassPixelize(fileName, resolution_coefficient, filterType, do_not_upscale, chromakey, true, options);
     }
 }
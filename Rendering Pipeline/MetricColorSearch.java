@@ -0,0 +1,225 @@
+/**
+ * Finds the closest color in a palette by a ColorMetric instead of the sum of channel differences, with a k-d tree over the palette colors'
+ * coordinates in the metric's space, built the same way as KdTreeColorSearch's. The palette is converted once when the search is built.
+ * Ties go to the earlier palette color, like every other search.
+ * <br>
+ * A pixel has to be converted before it can be searched for, so the conversions are kept in a table by color. Each slot holds one color's
+ * coordinates and closest palette color, and is replaced whole when a different color lands in it, so the threads sharing the search
+ * can read and fill it without locking. Neighbouring blocks of an image are often the same color, and those only cost a table read.
+ * <br>
+ * This file has no testing functionality. Running it from the terminal will do nothing.
+ */
+
+public class MetricColorSearch implements ColorSearch{
+    protected static final int LEAF_SIZE = 8;
+    //how many conversions are kept, a power of two.
+    private static final int CACHE_SIZE = 1 << 14;
+
+    protected final ColorMetric metric;
+    protected final boolean linear;
+    protected final int size;
+    //the palette colors' coordinates, by palette index.
+    protected int[][] coordinates;
+    protected final int[] weights;
+
+    protected int[] tree_order;
+    //node_axis is the coordinate a node splits on, or -1 for a leaf.
+    protected int[] node_axis;
+    protected int[] node_split;
+    protected int[] node_left;
+    protected int[] node_right;
+    protected int[] node_start;
+    protected int[] node_end;
+    protected int root;
+    private int nodes_used = 0;
+
+    private final Converted[] cache = new Converted[CACHE_SIZE];
+
+    /**
+     * The constructor of the MetricColorSearch object. Converts the palette and builds the tree.
+     * @param palette Palette, the palette that colors will be matched against.
+     * @param metric ColorMetric, how the distance between colors is measured.
+     * @param linear boolean, whether every palette color is scored instead of searching the tree, which is only worth it for checking the tree.
+     */
+    public MetricColorSearch(Palette palette, ColorMetric metric, boolean linear){
+        this.metric = metric;
+        this.linear = linear;
+        size = palette.size();
+        weights = new int[]{metric.weight(0), metric.weight(1), metric.weight(2)};
+        coordinates = new int[3][size];
+        int[] converted = new int[3];
+        for (int i = 0; i < size; i++){
+            metric.coordinates(palette.argb(i), converted);
+            for (int axis = 0; axis < 3; axis++){
+                coordinates[axis][i] = converted[axis];
+            }
+        }
+
+        tree_order = new int[size];
+        for (int i = 0; i < size; i++){
+            tree_order[i] = i;
+        }
+        int max_nodes = 2 * size + 1;
+        node_axis = new int[max_nodes];
+        node_split = new int[max_nodes];
+        node_left = new int[max_nodes];
+        node_right = new int[max_nodes];
+        node_start = new int[max_nodes];
+        node_end = new int[max_nodes];
+        root = buildNode(0, size);
+    }
+
+    /**
+     * Builds the subtree for tree_order[from, to) and returns its node, splitting along the axis the colors are most spread out on once weighted.
+     */
+    private int buildNode(int from, int to){
+        int node = nodes_used;
+        nodes_used += 1;
+        node_start[node] = from;
+        node_end[node] = to;
+        if (to - from <= LEAF_SIZE){
+            node_axis[node] = -1;
+            return node;
+        }
+
+        int axis = 0;
+        double widest = -1;
+        for (int candidate = 0; candidate < 3; candidate++){
+            int low = Integer.MAX_VALUE;
+            int high = Integer.MIN_VALUE;
+            for (int i = from; i < to; i++){
+                int value = coordinates[candidate][tree_order[i]];
+                low = Math.min(low, value);
+                high = Math.max(high, value);
+            }
+            double spread = (double)(high - low) * (high - low) * weights[candidate];
+            if (spread > widest){
+                widest = spread;
+                axis = candidate;
+            }
+        }
+
+        int[] values = coordinates[axis];
+        for (int i = from + 1; i < to; i++){
+            int moving = tree_order[i];
+            int j = i - 1;
+            while (j >= from && values[tree_order[j]] > values[moving]){
+                tree_order[j + 1] = tree_order[j];
+                j--;
+            }
+            tree_order[j + 1] = moving;
+        }
+
+        int middle = (from + to) / 2;
+        node_axis[node] = axis;
+        node_split[node] = values[tree_order[middle]];
+        node_left[node] = buildNode(from, middle);
+        node_right[node] = buildNode(middle, to);
+        return node;
+    }
+
+    public int nearest(int rgb){
+        return convert(rgb).nearest;
+    }
+
+    public int nearestBefore(int rgb, int limit){
+        Converted color = convert(rgb);
+        if (limit >= size){
+            return color.nearest;
+        }
+        return find(color.x, color.y, color.z, limit);
+    }
+
+    //looks a color up in the table, converting and searching for it if it isn't there.
+    private Converted convert(int rgb){
+        rgb &= 0xFFFFFF;
+        int slot = (rgb * 0x9E3779B1) >>> (32 - Integer.numberOfTrailingZeros(CACHE_SIZE));
+        Converted color = cache[slot];
+        if (color != null && color.rgb == rgb){
+            return color;
+        }
+        int[] converted = new int[3];
+        metric.coordinates(rgb, converted);
+        color = new Converted(rgb, converted[0], converted[1], converted[2], find(converted[0], converted[1], converted[2], size));
+        cache[slot] = color;
+        return color;
+    }
+
+    private int find(int x, int y, int z, int limit){
+        if (linear){
+            long best_key = Long.MAX_VALUE;
+            for (int index = 0; index < limit; index++){
+                best_key = Math.min(best_key, key(index, x, y, z));
+            }
+            return (int)best_key;
+        }
+        return (int)search(root, x, y, z, limit, Long.MAX_VALUE, 0, 0, 0);
+    }
+
+    //packs a palette color's distance and index into one long as (distance << 32) | index, so a lower key is always the better match, ties included.
+    private long key(int index, int x, int y, int z){
+        long dx = coordinates[0][index] - x;
+        long dy = coordinates[1][index] - y;
+        long dz = coordinates[2][index] - z;
+        long distance = weights[0] * dx * dx + weights[1] * dy * dy + weights[2] * dz * dz;
+        return (distance << 32) | index;
+    }
+
+    /**
+     * Searches the subtree under node for a closer color than the best one found so far, see KdTreeColorSearch.search.
+     * The offsets are how far the color is outside the subtree's region along each axis, so the weighted sum of their squares is the closest
+     * any color under this node can be.
+     * @return best_key long, the packed best match after searching this subtree.
+     */
+    private long search(int node, int x, int y, int z, int limit, long best_key, long x_offset, long y_offset, long z_offset){
+        long bound = weights[0] * x_offset * x_offset + weights[1] * y_offset * y_offset + weights[2] * z_offset * z_offset;
+        if (bound > (best_key >>> 32)){
+            return best_key;
+        }
+
+        int axis = node_axis[node];
+        if (axis < 0){
+            for (int i = node_start[node]; i < node_end[node]; i++){
+                int index = tree_order[i];
+                if (index < limit){
+                    best_key = Math.min(best_key, key(index, x, y, z));
+                }
+            }
+            return best_key;
+        }
+
+        int value = axis == 0 ? x : (axis == 1 ? y : z);
+        int split = node_split[node];
+        int near_side = value < split ? node_left[node] : node_right[node];
+        int far_side = value < split ? node_right[node] : node_left[node];
+
+        best_key = search(near_side, x, y, z, limit, best_key, x_offset, y_offset, z_offset);
+
+        long gap = Math.abs(value - split);
+        if (axis == 0){
+            best_key = search(far_side, x, y, z, limit, best_key, Math.max(x_offset, gap), y_offset, z_offset);
+        } else if (axis == 1){
+            best_key = search(far_side, x, y, z, limit, best_key, x_offset, Math.max(y_offset, gap), z_offset);
+        } else {
+            best_key = search(far_side, x, y, z, limit, best_key, x_offset, y_offset, Math.max(z_offset, gap));
+        }
+        return best_key;
+    }
+
+    //one converted color. The fields are final, so a thread that finds it in the table always sees all of them.
+    private static final class Converted{
+        final int rgb;
+        final int x;
+        final int y;
+        final int z;
+        final int nearest;
+
+        Converted(int rgb, int x, int y, int z, int nearest){
+            this.rgb = rgb;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.nearest = nearest;
+        }
+    }
+}
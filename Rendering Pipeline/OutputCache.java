@@ -0,0 +1,199 @@
+/**
+ * Remembers what every image MassPixelize saved was made from, so a rerun can skip the images that would come out the same.
+ * <br>
+ * Each saved image is recorded under its output file name with a key, which is a SHA-256 hash of the input file's bytes, every setting that
+ * changes the output, and the palette's colors. Renaming or touching an input doesn't change its key, editing it or any setting does.
+ * An image is skipped when its key is the one recorded and its output file is still there with the size it was saved at, so deleting or
+ * replacing an output makes it be made again.
+ * <br>
+ * The cache is kept in output_images/pixelize cache.txt, one "output file name, size, key" line per image. It's read when the run starts
+ * and written when it ends, so a run that is stopped partway through redoes the images it finished on the next run.
+ * <br>
+ * This file has no testing functionality. Running it from the terminal will do nothing.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class OutputCache {
+    public static final String FILE_NAME = "output_images/pixelize cache.txt";
+
+    private final File file;
+    //the settings and palette part of every key, which is the same for every image in a run.
+    private final byte[] settings;
+    //by output file name.
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * The constructor of the OutputCache object. Reads the cache file if there is one.
+     * @param file File, where the cache is kept.
+     * @param resolution_coefficient int, the amount of downscaling and upscaling that will happen to the images.
+     * @param filterType String, the type of filtering that will be applied to the images.
+     * @param do_not_upscale boolean, whether the images are left at the lowered resolution.
+     * @param chromakey boolean, whether the images are chromakeyed after the resolution is reduced.
+     * @param options PixelizeOptions, the optional settings for this run.
+     */
+    public OutputCache(File file, int resolution_coefficient, String filterType, boolean do_not_upscale, boolean chromakey, PixelizeOptions options){
+        this.file = file;
+        settings = settings(resolution_coefficient, filterType, do_not_upscale, chromakey, options).getBytes(StandardCharsets.UTF_8);
+        if (file.isFile()){
+            read();
+        }
+    }
+
+    /**
+     * Writes out every setting that changes what an image comes out as, along with the palette's colors, so that changing any of them
+     * changes every key. Settings that only change how fast it runs, like threads, workers or fused, are left out.
+     */
+    static String settings(int resolution_coefficient, String filterType, boolean do_not_upscale, boolean chromakey, PixelizeOptions options){
+        StringBuilder builder = new StringBuilder();
+        builder.append(resolution_coefficient).append('|').append(filterType).append('|').append(do_not_upscale).append('|').append(chromakey);
+        builder.append('|').append(options.search_type).append('|').append(options.metric).append('|').append(options.seed).append('|').append(options.frame);
+        builder.append('|').append(options.downscale).append('|').append(options.lazy_upscale).append('|').append(options.indexed);
+        builder.append('|').append(options.record_scale);
+        builder.append('|').append(options.encoder).append('|').append(options.png_compression).append('|').append(options.png_filter);
+        builder.append('|').append(options.serpentine).append('|').append(options.spread);
+        if (chromakey){
+            builder.append('|').append(Integer.toHexString(options.key_color)).append('|').append(options.key_tolerance);
+            builder.append('|').append(options.key_softness).append('|').append(options.spill);
+        }
+        builder.append('|');
+        Palette palette = Palette.fromOptions(options);
+        for (int i = 0; i < palette.size(); i++){
+            builder.append(Integer.toHexString(palette.argb(i))).append(',');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Works out the key for an input file.
+     * @param input byte[], the whole input file.
+     * @return key String, the hash of the input and the settings, in hex.
+     */
+    public String key(byte[] input){
+        MessageDigest digest = newDigest();
+        digest.update(input);
+        return finishKey(digest);
+    }
+
+    /**
+     * Works out the key for an input file without holding the whole file, for images that are read a strip at a time.
+     * @param file File, the input file.
+     * @return key String, the same key key(byte[]) gives for the file's bytes.
+     * @throws IOException if the file can't be read.
+     */
+    public String key(File file) throws IOException{
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream input = new FileInputStream(file)){
+            int read;
+            while ((read = input.read(buffer)) > 0){
+                digest.update(buffer, 0, read);
+            }
+        }
+        return finishKey(digest);
+    }
+
+    private static MessageDigest newDigest(){
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            //every Java platform has to have SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    //adds the settings to a digest of the input and turns it into hex.
+    private String finishKey(MessageDigest digest){
+        digest.update(settings);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()){
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Checks whether an output is already what the input with this key would make.
+     * @param outputFileName String, where the image would be saved.
+     * @param key String, the input's key.
+     * @return unchanged boolean, true if the image can be skipped.
+     */
+    public boolean unchanged(String outputFileName, String key){
+        Entry entry = entries.get(outputFileName);
+        if (entry == null || !entry.key.equals(key)){
+            return false;
+        }
+        File output = new File(outputFileName);
+        return output.isFile() && output.length() == entry.size;
+    }
+
+    /**
+     * Records an image that has just been saved.
+     * @param outputFileName String, where the image was saved.
+     * @param key String, the key of the input it was made from.
+     */
+    public void record(String outputFileName, String key){
+        entries.put(outputFileName, new Entry(key, new File(outputFileName).length()));
+    }
+
+    /**
+     * Writes the cache file, sorted by output file name. It's written next to the real one and moved over it,
+     * so a run stopped while writing leaves the old cache whole.
+     */
+    public void save() throws IOException{
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Entry> entry : new TreeMap<>(entries).entrySet()){
+            lines.add(entry.getKey() + "\t" + entry.getValue().size + "\t" + entry.getValue().key);
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null){
+            parent.mkdirs();
+        }
+        File temporary = new File(file.getPath() + ".tmp");
+        Files.write(temporary.toPath(), lines, StandardCharsets.UTF_8);
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    //reads the cache file, a line that doesn't make sense is skipped, which only means that image is made again.
+    private void read(){
+        try {
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)){
+                String[] parts = line.split("\t");
+                if (parts.length != 3){
+                    continue;
+                }
+                try {
+                    entries.put(parts[0], new Entry(parts[2], Long.parseLong(parts[1])));
+                } catch (NumberFormatException e) {
+                    //skipped
+                }
+            }
+        } catch (IOException e) {
+            System.err.println(String.format("Couldn't read %s, every image will be made: %s%n", file, e));
+        }
+    }
+
+    //what an output was made from and how big it was when it was saved.
+    private static class Entry{
+        final String key;
+        final long size;
+
+        Entry(String key, long size){
+            this.key = key;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,419 @@
+/**
+ * A color palette that has been read in and can't be changed. Holds the colors as packed ARGB ints and as separate red, green and blue arrays,
+ * along with the color searches that have been built for it, so a palette used for many images is only read and searched over once.
+ * <br>
+ * Palette files are read once and kept until the file changes, which is checked by its path, size and modified time.
+ * Both of the palette formats are read the same way:
+ *             palette.csv, one "red,green,blue" color per line, which is a single palette.
+ *             saved palettes.txt, named palettes one after another. A line that isn't a color starts a new palette with that name if it comes after
+ *             a blank line, otherwise it's a comment inside the palette, like the "reds" and "greens" headings in gba colors.
+ *             Colors before the first name belong to a palette named after the file.
+ * <br>
+ * This file has no testing functionality. Running it from the terminal will do nothing.
+ */
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class Palette {
+    //every palette file that has been read, by absolute path.
+    private static final ConcurrentHashMap<String, PaletteFile> files = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final int[] argb;
+    private final int[] red;
+    private final int[] green;
+    private final int[] blue;
+    private final IndexColorModel color_model;
+    //the color table for images packed 1, 2 or 4 bits a pixel, or null if the palette needs more than 16 entries.
+    private final IndexColorModel packed_color_model;
+    //the searches built for this palette by search type. They don't change once built, so every thread can share them.
+    private final ConcurrentHashMap<String, ColorSearch> searches = new ConcurrentHashMap<>();
+
+    /**
+     * The constructor of the Palette object. Copies the colors, so changing the array afterwards doesn't change the palette.
+     * @param name String, the name of the palette.
+     * @param rgb int[], the colors in packed RGB format. Alpha is ignored, every palette color is opaque.
+     */
+    public Palette(String name, int[] rgb){
+        this.name = name;
+        argb = new int[rgb.length];
+        red = new int[rgb.length];
+        green = new int[rgb.length];
+        blue = new int[rgb.length];
+        for (int i = 0; i < rgb.length; i++){
+            argb[i] = 0xFF000000 | rgb[i];
+            red[i] = (rgb[i] >> 16) & 0xFF;
+            green[i] = (rgb[i] >> 8) & 0xFF;
+            blue[i] = rgb[i] & 0xFF;
+        }
+        int bits = tableBits();
+        color_model = buildColorModel(bits);
+        //packed pixels come in 1, 2 or 4 bits, so a 3 bit table is padded out to 4.
+        packed_color_model = bits > 4 ? null : buildColorModel(bits == 3 ? 4 : bits);
+    }
+
+    public String name(){ return name; }
+
+    public int size(){ return argb.length; }
+
+    public int argb(int index){ return argb[index]; }
+
+    public int red(int index){ return red[index]; }
+
+    public int green(int index){ return green[index]; }
+
+    public int blue(int index){ return blue[index]; }
+
+    public Color color(int index){ return new Color(argb[index]); }
+
+    /**
+     * Copies of the color arrays, for code that works on whole arrays at once.
+     * @return colors int[], one entry per palette color.
+     */
+    public int[] argbArray(){ return argb.clone(); }
+
+    public int[] redArray(){ return red.clone(); }
+
+    public int[] greenArray(){ return green.clone(); }
+
+    public int[] blueArray(){ return blue.clone(); }
+
+    /**
+     * The index of the transparent entry in the color table, which is the entry right after the last color.
+     * @return index int, the transparent index, or -1 if the palette already has 256 colors and there's no room for one.
+     */
+    public int transparentIndex(){
+        return argb.length < 256 ? argb.length : -1;
+    }
+
+    /**
+     * The palette as a color table for indexed images, like GIF frames. The colors keep their indexes, the transparent entry comes after them,
+     * and the table is padded with black to a power of two entries, the size a GIF color table has to be.
+     * @return color_model IndexColorModel, the color table.
+     */
+    public IndexColorModel colorModel(){ return color_model; }
+
+    /**
+     * The color table indexedImage uses.
+     * @param packed boolean, whether the image is packed 1, 2 or 4 bits a pixel if the palette fits.
+     * @return color_model IndexColorModel, the packed color table if it's asked for and the palette fits in one, otherwise colorModel().
+     */
+    public IndexColorModel colorModel(boolean packed){
+        return packed && packed_color_model != null ? packed_color_model : color_model;
+    }
+
+    //the fewest bits that hold every color and the transparent entry.
+    private int tableBits(){
+        int entries = transparentIndex() < 0 ? argb.length : argb.length + 1;
+        int bits = 1;
+        while ((1 << bits) < entries){
+            bits++;
+        }
+        return bits;
+    }
+
+    private IndexColorModel buildColorModel(int bits){
+        byte[] r = new byte[1 << bits];
+        byte[] g = new byte[1 << bits];
+        byte[] b = new byte[1 << bits];
+        for (int i = 0; i < argb.length; i++){
+            r[i] = (byte)red[i];
+            g[i] = (byte)green[i];
+            b[i] = (byte)blue[i];
+        }
+        return new IndexColorModel(bits, 1 << bits, r, g, b, transparentIndex());
+    }
+
+    /**
+     * Checks that every color has an index that fits in the byte a pixel gets in an indexed image, which holds at most 256 colors.
+     * @param use String, what the indexed image is for, used in the message.
+     * @return palette Palette, this palette.
+     * @throws IllegalArgumentException if the palette has more than 256 colors.
+     */
+    public Palette requireIndexable(String use){
+        if (argb.length > 256){
+            throw new IllegalArgumentException(String.format("%s needs a palette of at most 256 colors, %s has %d", use, name, argb.length));
+        }
+        return this;
+    }
+
+    /**
+     * The index a transparent pixel gets in an indexed image, the transparent index, or the color closest to black if the palette is full.
+     * @return index int, the index.
+     */
+    public int transparentPixelIndex(){
+        int transparent = transparentIndex();
+        return transparent >= 0 ? transparent : search("lut").nearest(0xFF000000);
+    }
+
+    /**
+     * Turns an image that has already been reduced to this palette into an indexed image using the palette's color table.
+     * Pixels that are mostly transparent get the transparent index, or the closest color if there isn't one.
+     * Any pixel that isn't a palette color gets the closest one, so it also works on images that haven't been reduced, just without dithering.
+     * @param image BufferedImage, the image being indexed.
+     * @return indexed BufferedImage, a TYPE_BYTE_INDEXED image with colorModel() as its color table.
+     */
+    public BufferedImage toIndexed(BufferedImage image){
+        return toIndexed(image, false);
+    }
+
+    /**
+     * Turns an image that has already been reduced to this palette into an indexed image, the same way as toIndexed(image).
+     * @param image BufferedImage, the image being indexed.
+     * @param packed boolean, whether the image is packed 1, 2 or 4 bits a pixel if the palette fits, see indexedImage.
+     * @return indexed BufferedImage, the indexed image.
+     */
+    public BufferedImage toIndexed(BufferedImage image, boolean packed){
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = ImageEditParent.readPixels(image);
+        byte[] data = new byte[width * height];
+
+        ColorSearch lookup = search("lut");
+        int transparent = transparentIndex();
+        //reduced images are mostly runs of the same color, so the last color found is checked first.
+        int last_rgb = 0;
+        int last_index = -1;
+        for (int i = 0; i < pixels.length; i++){
+            int rgb = pixels[i];
+            int index;
+            if ((rgb >>> 24) <= 127 && transparent >= 0){
+                index = transparent;
+            } else if (rgb == last_rgb && last_index >= 0){
+                index = last_index;
+            } else {
+                index = lookup.nearest(rgb | 0xFF000000);
+                last_rgb = rgb;
+                last_index = index;
+            }
+            data[i] = (byte)index;
+        }
+        return indexedImage(data, width, height, packed);
+    }
+
+    /**
+     * Makes an indexed image out of palette indexes, with colorModel(packed) as its color table.
+     * A packed image is a TYPE_BYTE_BINARY image with 8, 4 or 2 pixels to a byte, which only palettes of up to 15 colors fit in,
+     * anything else is a TYPE_BYTE_INDEXED image with a byte for each pixel.
+     * @param indexes byte[], width * height palette indexes, one row after another. Unpacked images are built around the array without copying it.
+     * @param width int, the width of the image.
+     * @param height int, the height of the image.
+     * @param packed boolean, whether the image is packed if the palette fits.
+     * @return indexed BufferedImage, the indexed image.
+     */
+    public BufferedImage indexedImage(byte[] indexes, int width, int height, boolean packed){
+        if (!packed || packed_color_model == null){
+            WritableRaster raster = Raster.createInterleavedRaster(new DataBufferByte(indexes, width * height), width, height, width, 1, new int[]{0}, null);
+            return new BufferedImage(color_model, raster, false, null);
+        }
+
+        BufferedImage indexed = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY, packed_color_model);
+        byte[] data = ((DataBufferByte)indexed.getRaster().getDataBuffer()).getData();
+        int bits = packed_color_model.getPixelSize();
+        int per_byte = 8 / bits;
+        int stride = (width + per_byte - 1) / per_byte;
+        //the first pixel of each byte goes in its highest bits.
+        for (int row = 0; row < height; row++){
+            int in = row * width;
+            int out = row * stride;
+            for (int col = 0; col < width; col++){
+                data[out + col / per_byte] |= (indexes[in + col] & 0xFF) << (8 - bits * (col % per_byte + 1));
+            }
+        }
+        return indexed;
+    }
+
+    /**
+     * Returns the color search of the type asked for, building it the first time it's asked for.
+     * @param search_type String, the type of search, see ColorSearch.create.
+     * @return search ColorSearch, the search over this palette.
+     */
+    public ColorSearch search(String search_type){
+        return searches.computeIfAbsent(search_type, type -> ColorSearch.create(type, this));
+    }
+
+    /**
+     * Returns the color search of the type asked for that measures distance by a metric, building it the first time it's asked for.
+     * @param search_type String, the type of search, see ColorSearch.create.
+     * @param metric String, the name of the metric, see ColorMetric.
+     * @return search ColorSearch, the search over this palette.
+     */
+    public ColorSearch search(String search_type, String metric){
+        if (metric.equals("manhattan")){
+            return search(search_type);
+        }
+        return searches.computeIfAbsent(metric + " " + search_type, type -> ColorSearch.create(search_type, metric, this));
+    }
+
+    /**
+     * Picks the palette for a run, the one generated for it if there is one, then the palette named in the options, otherwise palette.csv.
+     * @param options PixelizeOptions, the optional settings for this run.
+     * @return palette Palette, the palette.
+     */
+    public static Palette fromOptions(PixelizeOptions options){
+        if (options.generated_palette != null){
+            return options.generated_palette;
+        }
+        if (options.palette.isEmpty()){
+            return load("palette.csv");
+        }
+        return load(options.palettes, options.palette);
+    }
+
+    /**
+     * Returns the first palette in a file, which for a csv file is the whole file.
+     * @param path String, the palette file.
+     * @return palette Palette, the first palette in the file.
+     */
+    public static Palette load(String path){
+        Palette[] palettes = read(path);
+        if (palettes.length == 0){
+            throw new IllegalArgumentException(String.format("%s has no colors in it", path));
+        }
+        return palettes[0];
+    }
+
+    /**
+     * Returns the palette with the name asked for. Names are matched ignoring case and surrounding spaces.
+     * @param path String, the palette file.
+     * @param name String, the name of the palette.
+     * @return palette Palette, the named palette.
+     */
+    public static Palette load(String path, String name){
+        Palette[] palettes = read(path);
+        for (Palette palette : palettes){
+            if (palette.name.equalsIgnoreCase(name.trim())){
+                return palette;
+            }
+        }
+        List<String> names = new ArrayList<>();
+        for (Palette palette : palettes){
+            names.add(palette.name);
+        }
+        throw new IllegalArgumentException(String.format("%s has no palette named \"%s\", the palettes are: %s", path, name, String.join(", ", names)));
+    }
+
+    /**
+     * Returns every palette in a file, reading the file only if it hasn't been read yet or has changed since.
+     * @param path String, the palette file.
+     * @return palettes Palette[], the palettes in the order they're in the file.
+     */
+    private static Palette[] read(String path){
+        File file = new File(path);
+        long modified = file.lastModified();
+        long length = file.length();
+        PaletteFile cached = files.get(file.getAbsolutePath());
+        if (cached != null && cached.modified == modified && cached.length == length){
+            return cached.palettes;
+        }
+
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Palette[] palettes = parse(lines, file.getName());
+        files.put(file.getAbsolutePath(), new PaletteFile(modified, length, palettes));
+        return palettes;
+    }
+
+    /**
+     * Splits the lines of a palette file into palettes. Palettes without any colors are left out.
+     * @param lines List, the lines of the file.
+     * @param file_name String, the name for any colors that come before the first palette name.
+     * @return palettes Palette[], the palettes in the order they're in the file.
+     */
+    static Palette[] parse(List<String> lines, String file_name){
+        List<Palette> palettes = new ArrayList<>();
+        String name = file_name;
+        int[] colors = new int[16];
+        int color_count = 0;
+        boolean after_blank = true;
+
+        for (int line_num = 0; line_num < lines.size(); line_num++){
+            String line = lines.get(line_num).trim();
+            if (line.isEmpty()){
+                after_blank = true;
+                continue;
+            }
+
+            int rgb = parseColor(line, line_num + 1);
+            if (rgb >= 0){
+                if (color_count == colors.length){
+                    colors = Arrays.copyOf(colors, color_count * 2);
+                }
+                colors[color_count] = rgb;
+                color_count += 1;
+            } else if (after_blank){
+                //a name after a blank line starts the next palette.
+                if (color_count > 0){
+                    palettes.add(new Palette(name, Arrays.copyOf(colors, color_count)));
+                }
+                name = line;
+                color_count = 0;
+            }
+            after_blank = false;
+        }
+        if (color_count > 0){
+            palettes.add(new Palette(name, Arrays.copyOf(colors, color_count)));
+        }
+        return palettes.toArray(new Palette[0]);
+    }
+
+    /**
+     * Reads a "red,green,blue" line.
+     * @param line String, the line, without surrounding spaces.
+     * @param line_num int, the line number, for the error message.
+     * @return rgb int, the packed RGB color, or -1 if the line isn't a color.
+     */
+    private static int parseColor(String line, int line_num){
+        String[] value_separated = line.split(",");
+        if (value_separated.length < 3){
+            return -1;
+        }
+        int rgb = 0;
+        for (int i = 0; i < 3; i++){
+            int value;
+            try {
+                value = Integer.parseInt(value_separated[i].trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+            if (value < 0 || value > 255){
+                throw new IllegalArgumentException(String.format("Color value out of range on line %d: %s", line_num, line));
+            }
+            rgb = (rgb << 8) | value;
+        }
+        return rgb;
+    }
+
+    /**
+     * The palettes read from one file, along with the size and modified time the file had when it was read.
+     */
+    private static class PaletteFile{
+        final long modified;
+        final long length;
+        final Palette[] palettes;
+
+        PaletteFile(long modified, long length, Palette[] palettes){
+            this.modified = modified;
+            this.length = length;
+            this.palettes = palettes;
+        }
+    }
+}
@@ -0,0 +1,443 @@
+/**
+ * Makes a palette from the colors in an image, or in a whole folder of images so they all share it, instead of reading one from a palette file.
+ * <br>
+ * The colors are counted in a histogram with 32 levels per channel, which also keeps the sum of the exact colors in each of its boxes so nothing is
+ * lost to the rounding. Only a sample of the pixels is counted, spread evenly through each image, so a folder of any size takes about the same time
+ * to count. Pixels that are mostly transparent are left out, since palette reduction never picks a color for them.
+ * <br>
+ * The methods, picked by the generate option:
+ *             "median-cut" = keeps cutting the box of colors with the widest spread in half along that channel, at the middle pixel,
+ *             until there are as many boxes as colors wanted. Each color is the mean of its box.
+ *             "k-means" = starts from the median cut colors and keeps moving each color to the mean of the pixels closest to it.
+ *             The closest colors are found on several threads, and it stops once nothing moves or after ITERATIONS rounds.
+ * The colors are ordered from the one covering the most pixels to the one covering the least, so the same image always gives the same palette.
+ * <br>
+ * Compilation:  javac PaletteGenerator.java <br>
+ * Execution:    java PaletteGenerator input String, colors int, method String  <br>
+ * <br>
+ * Commandline arguments:
+ *             args[0] input String, an image or a folder of images.
+ *             args[1] colors int, how many colors the palette has. Defaults to 16.
+ *             args[2] method String, "median-cut" or "k-means". Defaults to k-means.
+ *             The palette is printed one "red,green,blue" color per line, ready to be saved as palette.csv or added to saved palettes.txt.
+ */
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class PaletteGenerator {
+    //the histogram has 2^BITS levels per channel.
+    private static final int BITS = 5;
+    private static final int BINS = 1 << (3 * BITS);
+    //the most rounds k-means takes.
+    public static final int ITERATIONS = 16;
+
+    private PaletteGenerator(){
+    }
+
+    /**
+     * Makes a palette from one image.
+     * @param image BufferedImage, the image the colors come from.
+     * @param options PixelizeOptions, the method, colors, samples and threads options are used.
+     * @return palette Palette, the generated palette.
+     */
+    public static Palette generate(BufferedImage image, PixelizeOptions options){
+        Histogram histogram = new Histogram();
+        histogram.add(image, options.samples);
+        return generate(histogram, options);
+    }
+
+    /**
+     * Makes one palette from every image in a list, each read on one of several threads. Each image gets an even share of the samples.
+     * Files that can't be read as images are skipped.
+     * @param fileNames String[], the images the colors come from.
+     * @param options PixelizeOptions, the method, colors, samples and workers options are used.
+     * @return palette Palette, the generated palette.
+     */
+    public static Palette generate(String[] fileNames, PixelizeOptions options){
+        int samples = Math.max(1, options.samples / Math.max(1, fileNames.length));
+        int workers = Math.max(1, Math.min(options.workers, fileNames.length));
+        //each worker takes the next file until there are none left, counting them into its own histogram, and the histograms are added up at the end.
+        AtomicInteger next_file = new AtomicInteger();
+        List<Callable<Histogram>> counters = new ArrayList<>();
+        for (int worker = 0; worker < workers; worker++){
+            counters.add(() -> {
+                Histogram counted = new Histogram();
+                for (int i = next_file.getAndIncrement(); i < fileNames.length; i = next_file.getAndIncrement()){
+                    try {
+                        BufferedImage image = ImageIO.read(new File(fileNames[i]));
+                        if (image != null){
+                            counted.add(image, samples);
+                        }
+                    } catch (IOException e) {
+                        System.err.println(String.format("%s: %s%n", fileNames[i], e));
+                    }
+                }
+                return counted;
+            });
+        }
+
+        Histogram histogram = new Histogram();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            for (Future<Histogram> counted : pool.invokeAll(counters)){
+                histogram.add(counted.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while counting colors", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException){
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return generate(histogram, options);
+    }
+
+    /**
+     * Makes a palette from a histogram with the method named in the options.
+     * @param histogram Histogram, the counted colors.
+     * @param options PixelizeOptions, the optional settings for this run.
+     * @return palette Palette, the generated palette, a single black if nothing was counted.
+     */
+    static Palette generate(Histogram histogram, PixelizeOptions options){
+        boolean k_means = options.generate.equals("k-means");
+        if (!k_means && !options.generate.equals("median-cut")){
+            throw new IllegalArgumentException(String.format("Unknown palette method \"%s\", the methods are: median-cut, k-means", options.generate));
+        }
+        Cluster[] colors = histogram.colors();
+        if (colors.length == 0){
+            return new Palette("generated", new int[]{0});
+        }
+        Cluster[] centres = medianCut(colors, Math.max(1, options.colors));
+        if (k_means){
+            centres = kMeans(colors, centres, options.threads);
+        }
+
+        Arrays.sort(centres, Comparator.comparingLong((Cluster centre) -> -centre.count).thenComparingInt(Cluster::rgb));
+        //two centres can round to the same color, which only needs to be in the palette once.
+        int[] rgb = Arrays.stream(centres).mapToInt(Cluster::rgb).distinct().toArray();
+        return new Palette("generated", rgb);
+    }
+
+    /**
+     * Splits the colors into boxes, always cutting the box whose widest channel is widest, weighted by how many pixels it holds.
+     * @param colors Cluster[], the histogram's colors.
+     * @param count int, how many boxes are wanted.
+     * @return centres Cluster[], the mean color of each box, fewer than count if there are fewer colors.
+     */
+    private static Cluster[] medianCut(Cluster[] colors, int count){
+        List<Box> boxes = new ArrayList<>();
+        boxes.add(new Box(colors));
+        while (boxes.size() < count){
+            int widest = -1;
+            double widest_score = 0;
+            for (int i = 0; i < boxes.size(); i++){
+                if (boxes.get(i).score > widest_score){
+                    widest_score = boxes.get(i).score;
+                    widest = i;
+                }
+            }
+            if (widest < 0){
+                break;
+            }
+
+            Cluster[] box = boxes.get(widest).colors;
+            int channel = boxes.get(widest).channel;
+            Arrays.sort(box, Comparator.comparingDouble((Cluster color) -> color.mean(channel)).thenComparingInt(Cluster::rgb));
+            //cuts at the middle pixel, keeping at least one color on each side.
+            long half = total(box) / 2;
+            long seen = 0;
+            int cut = 1;
+            for (int i = 0; i < box.length - 1; i++){
+                seen += box[i].count;
+                cut = i + 1;
+                if (seen >= half){
+                    break;
+                }
+            }
+            boxes.set(widest, new Box(Arrays.copyOfRange(box, 0, cut)));
+            boxes.add(new Box(Arrays.copyOfRange(box, cut, box.length)));
+        }
+
+        Cluster[] centres = new Cluster[boxes.size()];
+        for (int i = 0; i < centres.length; i++){
+            Cluster centre = new Cluster();
+            for (Cluster color : boxes.get(i).colors){
+                centre.add(color);
+            }
+            centres[i] = centre;
+        }
+        return centres;
+    }
+
+    //a box of colors for median cut, with its widest channel and how much it's worth cutting worked out once.
+    private static final class Box{
+        final Cluster[] colors;
+        int channel = 0;
+        //the widest channel's range times the pixels in the box, 0 if it can't be cut.
+        double score = 0;
+
+        Box(Cluster[] colors){
+            this.colors = colors;
+            if (colors.length < 2){
+                return;
+            }
+            double widest = range(colors, 0);
+            for (int candidate = 1; candidate < 3; candidate++){
+                double candidate_range = range(colors, candidate);
+                if (candidate_range > widest){
+                    widest = candidate_range;
+                    channel = candidate;
+                }
+            }
+            score = widest * total(colors);
+        }
+    }
+
+    private static double range(Cluster[] box, int channel){
+        double low = Double.MAX_VALUE;
+        double high = -Double.MAX_VALUE;
+        for (Cluster color : box){
+            low = Math.min(low, color.mean(channel));
+            high = Math.max(high, color.mean(channel));
+        }
+        return high - low;
+    }
+
+    private static long total(Cluster[] box){
+        long total = 0;
+        for (Cluster color : box){
+            total += color.count;
+        }
+        return total;
+    }
+
+    /**
+     * Moves each centre to the mean of the colors closest to it until they stop changing. A centre nothing is closest to stays where it is.
+     * @param colors Cluster[], the histogram's colors.
+     * @param centres Cluster[], where the centres start.
+     * @param parallelism int, the number of threads the colors are spread over when finding their closest centre.
+     * @return centres Cluster[], the final centres, with the pixels closest to each.
+     */
+    private static Cluster[] kMeans(Cluster[] colors, Cluster[] centres, int parallelism){
+        int[] closest = new int[colors.length];
+        Arrays.fill(closest, -1);
+        double[][] color_means = new double[colors.length][];
+        for (int i = 0; i < colors.length; i++){
+            color_means[i] = new double[]{colors[i].mean(0), colors[i].mean(1), colors[i].mean(2)};
+        }
+        for (int iteration = 0; iteration < ITERATIONS; iteration++){
+            double[][] means = new double[centres.length][];
+            for (int i = 0; i < centres.length; i++){
+                means[i] = new double[]{centres[i].mean(0), centres[i].mean(1), centres[i].mean(2)};
+            }
+
+            //finding the closest centre is most of the work, each color is only written by the band it's in.
+            boolean[] moved = new boolean[1];
+            RowBands.run(colors.length, parallelism, (first, end) -> {
+                boolean band_moved = false;
+                for (int i = first; i < end; i++){
+                    int best = 0;
+                    double best_distance = Double.MAX_VALUE;
+                    double[] color = color_means[i];
+                    for (int centre = 0; centre < means.length; centre++){
+                        double red = color[0] - means[centre][0];
+                        double green = color[1] - means[centre][1];
+                        double blue = color[2] - means[centre][2];
+                        double distance = red * red + green * green + blue * blue;
+                        if (distance < best_distance){
+                            best_distance = distance;
+                            best = centre;
+                        }
+                    }
+                    if (closest[i] != best){
+                        closest[i] = best;
+                        band_moved = true;
+                    }
+                }
+                if (band_moved){
+                    synchronized (moved){
+                        moved[0] = true;
+                    }
+                }
+            });
+            if (!moved[0]){
+                break;
+            }
+
+            Cluster[] next = new Cluster[centres.length];
+            for (int i = 0; i < next.length; i++){
+                next[i] = new Cluster();
+            }
+            for (int i = 0; i < colors.length; i++){
+                next[closest[i]].add(colors[i]);
+            }
+            for (int i = 0; i < next.length; i++){
+                if (next[i].count > 0){
+                    centres[i] = next[i];
+                }
+            }
+        }
+        return centres;
+    }
+
+    /**
+     * The colors counted from sampled pixels. Each box of the histogram keeps how many pixels fell in it and the sum of each of their channels.
+     */
+    static final class Histogram{
+        final long[] count = new long[BINS];
+        final long[] red = new long[BINS];
+        final long[] green = new long[BINS];
+        final long[] blue = new long[BINS];
+
+        /**
+         * Counts about samples pixels from an image, every so many pixels in order so they're spread over the whole image.
+         */
+        void add(BufferedImage image, int samples){
+            int width = image.getWidth();
+            int height = image.getHeight();
+            long pixels = (long)width * height;
+            long step = Math.max(1, pixels / Math.max(1, samples));
+            int[] row = new int[width];
+            long next = 0;
+            for (int y = 0; y < height; y++){
+                long row_start = (long)y * width;
+                if (next >= row_start + width){
+                    continue;
+                }
+                image.getRGB(0, y, width, 1, row, 0, width);
+                for (; next < row_start + width; next += step){
+                    add(row[(int)(next - row_start)]);
+                }
+            }
+        }
+
+        void add(int argb){
+            if ((argb >>> 24) <= 127){
+                return;
+            }
+            int r = (argb >> 16) & 0xFF;
+            int g = (argb >> 8) & 0xFF;
+            int b = argb & 0xFF;
+            int bin = ((r >> (8 - BITS)) << (2 * BITS)) | ((g >> (8 - BITS)) << BITS) | (b >> (8 - BITS));
+            count[bin] += 1;
+            red[bin] += r;
+            green[bin] += g;
+            blue[bin] += b;
+        }
+
+        void add(Histogram other){
+            for (int bin = 0; bin < BINS; bin++){
+                count[bin] += other.count[bin];
+                red[bin] += other.red[bin];
+                green[bin] += other.green[bin];
+                blue[bin] += other.blue[bin];
+            }
+        }
+
+        //every box that has any pixels in it.
+        Cluster[] colors(){
+            List<Cluster> colors = new ArrayList<>();
+            for (int bin = 0; bin < BINS; bin++){
+                if (count[bin] > 0){
+                    Cluster color = new Cluster();
+                    color.count = count[bin];
+                    color.red = red[bin];
+                    color.green = green[bin];
+                    color.blue = blue[bin];
+                    colors.add(color);
+                }
+            }
+            return colors.toArray(new Cluster[0]);
+        }
+    }
+
+    //a group of pixels, kept as how many there are and the sum of each channel.
+    private static final class Cluster{
+        long count;
+        long red;
+        long green;
+        long blue;
+
+        void add(Cluster other){
+            count += other.count;
+            red += other.red;
+            green += other.green;
+            blue += other.blue;
+        }
+
+        double mean(int channel){
+            long sum = channel == 0 ? red : (channel == 1 ? green : blue);
+            return (double)sum / count;
+        }
+
+        int rgb(){
+            int r = (int)Math.round(mean(0));
+            int g = (int)Math.round(mean(1));
+            int b = (int)Math.round(mean(2));
+            return (r << 16) | (g << 8) | b;
+        }
+    }
+
+    /**
+     * Passes in the commandline arguments and prints the palette made from an image or a folder of images.
+     * @param args String[], The arguments passed in from the commandline.
+     *             Args[0], The image or folder.
+     *             Args[1], The number of colors.
+     *             Args[2], The method.
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length == 0){
+            System.out.println("USAGE: java PaletteGenerator input colors method");
+            return;
+        }
+        PixelizeOptions options = new PixelizeOptions();
+        options.colors = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        options.generate = args.length > 2 ? args[2] : "k-means";
+
+        File input = new File(args[0]);
+        Palette palette;
+        if (input.isDirectory()){
+            File[] files = input.listFiles(File::isFile);
+            Arrays.sort(files);
+            String[] fileNames = new String[files.length];
+            for (int i = 0; i < files.length; i++){
+                fileNames[i] = files[i].getPath();
+            }
+            palette = generate(fileNames, options);
+        } else {
+            BufferedImage image;
+            try {
+                image = ImageIO.read(input);
+            } catch (IOException e) {
+                System.err.println(String.format("%s%n", e));
+                return;
+            }
+            if (image == null){
+                System.err.println(String.format("Not a readable image: %s%n", args[0]));
+                return;
+            }
+            palette = generate(image, options);
+        }
+        for (int i = 0; i < palette.size(); i++){
+            System.out.println(palette.red(i) + "," + palette.green(i) + "," + palette.blue(i));
+        }
+    }
+}
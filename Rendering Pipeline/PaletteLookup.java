@@ -0,0 +1,155 @@
+/**
+ * A precomputed lookup table that maps any color to the index of the closest color in a palette.
+ * Closest means the same thing it does in ReducePalette.scoreImage, the lowest sum of the red, green and blue differences,
+ * with ties going to whichever color comes first in the palette.
+ * <br>
+ * The table has one entry for every 5 bit per channel cell of the color cube (32768 entries). Most cells can only ever be won by one palette color,
+ * so their entry is that color's index and a pixel costs one array read. The cells that sit on a border between palette colors store a short list of
+ * the colors that could win somewhere inside the cell instead, and only those get scored. This keeps the output exactly the same as scoring every color.
+ * <br>
+ * This file has no testing functionality. Running it from the terminal will do nothing.
+ */
+
+public class PaletteLookup extends LinearColorSearch{
+    //the number of bits kept from each channel, 5 bits gives 32 steps per channel.
+    protected static final int CELL_BITS = 5;
+    protected static final int CELL_SIZE = 1 << (8 - CELL_BITS);
+    protected static final int CELLS_PER_CHANNEL = 1 << CELL_BITS;
+
+    //a value of 0 or above is a palette index, a negative value -(n+1) points at candidate_lists[n], which holds a count followed by that many palette indexes.
+    protected int[] table;
+    protected int[] candidate_lists;
+
+    /**
+     * The constructor of the PaletteLookup object. Takes the palette's channels and builds the table.
+     * The table only speeds up nearest, nearestBefore still scores the colors before the limit.
+     * @param palette Palette, the palette that colors will be matched against.
+     */
+    public PaletteLookup(Palette palette){
+        super(palette);
+        buildTable();
+    }
+
+    /**
+     * Fills in the table. For every cell, any palette color whose closest possible distance to the cell is no worse than the best worst-case distance
+     * of any palette color could be the winner for some pixel in that cell, so it is kept as a candidate.
+     */
+    protected void buildTable(){
+        int palette_size = palette_red.length;
+        table = new int[CELLS_PER_CHANNEL * CELLS_PER_CHANNEL * CELLS_PER_CHANNEL];
+        int[] near_distance = new int[palette_size];
+        int[] lists = new int[1024];
+        int lists_used = 0;
+
+        for (int cell_red = 0; cell_red < CELLS_PER_CHANNEL; cell_red++){
+            for (int cell_green = 0; cell_green < CELLS_PER_CHANNEL; cell_green++){
+                for (int cell_blue = 0; cell_blue < CELLS_PER_CHANNEL; cell_blue++){
+                    int red_low = cell_red * CELL_SIZE;
+                    int green_low = cell_green * CELL_SIZE;
+                    int blue_low = cell_blue * CELL_SIZE;
+
+                    //the smallest worst-case distance of any palette color, nobody further away than this can win.
+                    int bound = Integer.MAX_VALUE;
+                    for (int i = 0; i < palette_size; i++){
+                        near_distance[i] = nearDistance(palette_red[i], red_low) + nearDistance(palette_green[i], green_low) + nearDistance(palette_blue[i], blue_low);
+                        int far = farDistance(palette_red[i], red_low) + farDistance(palette_green[i], green_low) + farDistance(palette_blue[i], blue_low);
+                        if (far < bound){
+                            bound = far;
+                        }
+                    }
+
+                    int count = 0;
+                    int only = 0;
+                    for (int i = 0; i < palette_size; i++){
+                        if (near_distance[i] <= bound){
+                            count += 1;
+                            only = i;
+                        }
+                    }
+
+                    int cell = (cell_red << (2 * CELL_BITS)) | (cell_green << CELL_BITS) | cell_blue;
+                    if (count <= 1){
+                        table[cell] = only;
+                    }
+                    else
+                    {
+                        if (lists_used + count + 1 > lists.length){
+                            int[] grown = new int[Math.max(lists.length * 2, lists_used + count + 1)];
+                            System.arraycopy(lists, 0, grown, 0, lists_used);
+                            lists = grown;
+                        }
+                        table[cell] = -(lists_used + 1);
+                        lists[lists_used] = count;
+                        lists_used += 1;
+                        //candidates stay in palette order so ties still go to the earlier color.
+                        for (int i = 0; i < palette_size; i++){
+                            if (near_distance[i] <= bound){
+                                lists[lists_used] = i;
+                                lists_used += 1;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        candidate_lists = lists;
+    }
+
+    /**
+     * The smallest distance between a channel value and any value in a cell along that channel.
+     * @param value int, the palette channel value.
+     * @param low int, the lowest value in the cell.
+     * @return distance int, 0 if the value is inside the cell.
+     */
+    private static int nearDistance(int value, int low){
+        int high = low + CELL_SIZE - 1;
+        if (value < low){
+            return low - value;
+        }
+        if (value > high){
+            return value - high;
+        }
+        return 0;
+    }
+
+    /**
+     * The largest distance between a channel value and any value in a cell along that channel.
+     * @param value int, the palette channel value.
+     * @param low int, the lowest value in the cell.
+     * @return distance int, the distance to the far edge of the cell.
+     */
+    private static int farDistance(int value, int low){
+        int high = low + CELL_SIZE - 1;
+        return Math.max(Math.abs(value - low), Math.abs(value - high));
+    }
+
+    /**
+     * Returns the index of the palette color closest to the color passed in. Alpha is ignored.
+     * @param rgb int, the color in the default packed ARGB format.
+     * @return index int, the index of the closest color in the palette.
+     */
+    public int nearest(int rgb){
+        int cell = ((rgb >> 9) & 0x7C00) | ((rgb >> 6) & 0x3E0) | ((rgb >> 3) & 0x1F);
+        int entry = table[cell];
+        if (entry >= 0){
+            return entry;
+        }
+
+        int red = (rgb >> 16) & 0xFF;
+        int green = (rgb >> 8) & 0xFF;
+        int blue = rgb & 0xFF;
+        int start = -entry - 1;
+        int count = candidate_lists[start];
+        int best = candidate_lists[start + 1];
+        int best_distance = Integer.MAX_VALUE;
+        for (int i = start + 1; i <= start + count; i++){
+            int index = candidate_lists[i];
+            int distance = Math.abs(palette_red[index] - red) + Math.abs(palette_green[index] - green) + Math.abs(palette_blue[index] - blue);
+            if (distance < best_distance){
+                best_distance = distance;
+                best = index;
+            }
+        }
+        return best;
+    }
+}
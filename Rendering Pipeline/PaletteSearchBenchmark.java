@@ -0,0 +1,98 @@
+/**
+ * Times each type of color search against scoring every palette color, for palette sizes from 4 to 256.
+ * The palettes and pixels are random but seeded, so every run measures the same work. Each search is also checked against the linear search
+ * to make sure they pick the same colors.
+ * The vector search needs VectorColorSearch compiled and the module added, java --add-modules jdk.incubator.vector PaletteSearchBenchmark,
+ * otherwise its row times the linear search it falls back to.
+ * <br>
+ * Compilation:  javac PaletteSearchBenchmark.java <br>
+ * Execution:    java PaletteSearchBenchmark pixel_count int   <br>
+ * <br>
+ * Commandline arguments:
+ *             args[0] pixel_count int, how many random pixels each search matches per palette size. Defaults to 1000000.
+ */
+
+import java.util.Random;
+
+public class PaletteSearchBenchmark {
+    private static final int[] PALETTE_SIZES = {4, 8, 16, 32, 64, 128, 256};
+    private static final String[] SEARCH_TYPES = {"linear", "lut", "kdtree", "vector"};
+    //the results get added in here so the JIT can't skip the searches.
+    private static volatile int sink;
+
+    /**
+     * Runs a search over the pixels and returns the time taken per pixel in nanoseconds.
+     * Asking for the runner up as well times what the dithering filters do for each pixel.
+     * @param search ColorSearch, the search being timed.
+     * @param pixels int[], the colors being matched.
+     * @param check int[], the answers from the linear search, or null if there is nothing to check against.
+     * @param runner_up boolean, whether to also ask for the runner up.
+     * @return nanoseconds double, the average time per pixel.
+     */
+    private static double timeSearch(ColorSearch search, int[] pixels, int[] check, boolean runner_up){
+        long start = System.nanoTime();
+        int mismatches = 0;
+        int total = 0;
+        for (int i = 0; i < pixels.length; i++){
+            int winner = search.nearest(pixels[i]);
+            if (runner_up){
+                total += search.runnerUp(pixels[i], winner);
+            }
+            if (check != null && check[i] != winner){
+                mismatches += 1;
+            }
+            total += winner;
+        }
+        long end = System.nanoTime();
+        sink = total;
+        if (mismatches > 0){
+            System.err.println(String.format("%d mismatches against the linear search!", mismatches));
+        }
+        return (end - start) / (double)pixels.length;
+    }
+
+    /**
+     * Passes in the commandline arguments and prints a table of timings for each search and palette size.
+     * @param args String[], The arguments passed in from the commandline.
+     *             args[0] pixel_count int, how many random pixels each search matches per palette size.
+     */
+    public static void main(String[] args) {
+        int pixel_count = 1000000;
+        if (args.length > 0){
+            pixel_count = Integer.parseInt(args[0]);
+        }
+
+        Random rand = new Random(2021);
+        int[] pixels = new int[pixel_count];
+        for (int i = 0; i < pixel_count; i++){
+            pixels[i] = 0xFF000000 | rand.nextInt(0x1000000);
+        }
+
+        System.out.println("palette  search   build ms  nearest ns/px  with runner up ns/px");
+        for (int palette_size : PALETTE_SIZES){
+            int[] colors = new int[palette_size];
+            for (int i = 0; i < palette_size; i++){
+                colors[i] = rand.nextInt(0x1000000);
+            }
+            Palette palette = new Palette("random", colors);
+
+            ColorSearch reference = new LinearColorSearch(palette);
+            int[] check = new int[pixel_count];
+            for (int i = 0; i < pixel_count; i++){
+                check[i] = reference.nearest(pixels[i]);
+            }
+
+            for (String search_type : SEARCH_TYPES){
+                long build_start = System.nanoTime();
+                ColorSearch search = ColorSearch.create(search_type, palette);
+                double build_ms = (System.nanoTime() - build_start) / 1e6;
+
+                //the first pass lets the JIT warm up and is not reported.
+                timeSearch(search, pixels, check, false);
+                double nearest_ns = timeSearch(search, pixels, check, false);
+                double runner_up_ns = timeSearch(search, pixels, null, true);
+                System.out.println(String.format("%7d  %-7s %9.2f  %13.1f  %20.1f", palette_size, search_type, build_ms, nearest_ns, runner_up_ns));
+            }
+        }
+    }
+}
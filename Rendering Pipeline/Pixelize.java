@@ -1,6 +1,7 @@
 /**
  * Passes in an image that will go through downscaling, palette reduction, and finally upscaling again.
- * You can pick what type of dithering will be applied with the third argument, and you select the color palette with the palette.csv file contained in the same folder as this program.
+ * You can pick what type of dithering will be applied with the third argument, and you select the color palette with the palette.csv file contained in the same folder as this program,
+ * or by name from saved palettes.txt with the palette option, or have one made from the image with the generate option, see PaletteGenerator.
  * <br>
  * Compilation:  javac Pixelize.java <br>
  * Execution:    java Pixelize fileName String, resolution_coefficient int, filterType String    <br>
@@ -12,13 +13,20 @@
  *             "none" = no dithering.
  *             "dither" = crosshatch dithering.
  *             "random" = randomized dithering.
+ *             "floyd-steinberg", "atkinson", "sierra-lite" = error diffusion with that kernel, see ReducePaletteDiffuse.
+ *             "bayer2", "bayer4", "bayer8" = ordered dithering with a Bayer matrix of that size, see ReducePaletteOrdered.
+ *             args[3] do_not_upscale boolean, whether the image is left at the lowered resolution.
+ *             args[4] chromakey boolean, whether the image is chromakeyed after the resolution is reduced.
+ *             Any arguments after these are key=value options, see PixelizeOptions.
  * <br>
  * @author Nicholas Floyd, 2021
  */
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 
 public class Pixelize {
     private BufferedImage original = null;
@@ -33,56 +41,206 @@ public class Pixelize {
      * @param chromakey boolean, whether or not the image should be chromakeyed after the resolution is reduced.
      */
     public Pixelize(String fileName, int resolution_coefficient, String filterType, boolean do_not_upscale, boolean chromakey, boolean do_not_save, boolean do_not_visualize){
+        this(fileName, resolution_coefficient, filterType, do_not_upscale, chromakey, do_not_save, do_not_visualize, new PixelizeOptions());
+    }
+
+    /**
+     * Main filtering process with a set of options for the settings that don't have their own argument.
+     * @param fileName String, The file name of the image in a string.
+     * @param resolution_coefficient int, The coefficient by which the image's resolution will be reduced by.
+     * @param filterType String, The type of dithering that is desired in the final image.
+     * @param do_not_upscale boolean, whether or not the image should be upscaled back to it's original resolution after being pixelized
+     * @param chromakey boolean, whether or not the image should be chromakeyed after the resolution is reduced.
+     * @param options PixelizeOptions, the optional settings for this run.
+     */
+    public Pixelize(String fileName, int resolution_coefficient, String filterType, boolean do_not_upscale, boolean chromakey, boolean do_not_save, boolean do_not_visualize, PixelizeOptions options){
+        if (options.strip > 0){
+            if (StripPixelize.canStrip(filterType)){
+                //the whole image is never in memory, so there's nothing to display and no finished image to hand back.
+                if (!do_not_save){
+                    saveStrips(fileName, resolution_coefficient, filterType, do_not_upscale, chromakey, options);
+                }
+                return;
+            }
+            System.err.println(String.format("Error diffusion needs the whole image, so %s is read in whole%n", fileName));
+        }
+
         //reading in file
         if (read_in_file(fileName)){
-            //downscale code
-            DownscaleImage downscale = new DownscaleImage(original, resolution_coefficient, do_not_visualize);
-            BufferedImage downscaled_image = downscale.output_image();
-
-            //chromakey code
-            //this is so if the chromakey code is false it'll still pass through the previous step
-            BufferedImage gs_image = downscaled_image;
-
-            //actually if chromakey is true.
-            if (chromakey){
-                GreenScreen greenScreen = new GreenScreen(downscaled_image, do_not_visualize);
-                gs_image = greenScreen.output_image();
+            BufferedImage upscaled_image = filter(resolution_coefficient, filterType, do_not_upscale, chromakey, do_not_visualize, options, null);
+
+            if (!do_not_save) {
+                saveFile(fileName, upscaled_image, recordedScale(resolution_coefficient, do_not_upscale, options), ImageEncoder.create(options));
             }
 
-            //reduce palette code
-            ReducePalette reduce;
+            finalImage = upscaled_image;
+        }
+
 
-            if (filterType.equals("dither")){
-                reduce = new ReducePaletteDith(gs_image, do_not_visualize);
-            } else if(filterType.equals("random")){
-                reduce = new ReducePaletteRand(gs_image, do_not_visualize);
-            } else{
-                reduce = new ReducePalette(gs_image, do_not_visualize);
+    }
+
+    /**
+     * Pixelizes the file a strip at a time while it's being saved, see StripPixelize.
+     * @param fileName String, The file name of the image in a string.
+     * @param resolution_coefficient int, The coefficient by which the image's resolution will be reduced by.
+     * @param filterType String, The type of dithering that is desired in the final image.
+     * @param do_not_upscale boolean, whether or not the image should be upscaled back to it's original resolution after being pixelized
+     * @param chromakey boolean, whether or not the image should be chromakeyed after the resolution is reduced.
+     * @param options PixelizeOptions, the optional settings for this run.
+     */
+    private void saveStrips(String fileName, int resolution_coefficient, String filterType, boolean do_not_upscale, boolean chromakey, PixelizeOptions options){
+        try {
+            //a generated palette only samples the image, so it's made from the file before the strips are.
+            boolean generate = !options.generate.isEmpty() && options.generated_palette == null;
+            Palette palette = generate ? PaletteGenerator.generate(new String[]{fileName}, options) : Palette.fromOptions(options);
+            try (StripPixelize strips = new StripPixelize(new File(fileName), resolution_coefficient, do_not_upscale, chromakey, colorPicker(filterType, palette, options), options)){
+                saveFile(fileName, strips, recordedScale(resolution_coefficient, do_not_upscale, options), ImageEncoder.create(options));
             }
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println( String.format("%s%n", e) );
+        }
+    }
+
+    /**
+     * Pixelizes an image that has already been read in, without saving or displaying anything. This is what MassPixelize uses, so it can read and
+     * save the files on other threads.
+     * @param image BufferedImage, the image to pixelize.
+     * @param resolution_coefficient int, The coefficient by which the image's resolution will be reduced by.
+     * @param filterType String, The type of dithering that is desired in the final image.
+     * @param do_not_upscale boolean, whether or not the image should be upscaled back to it's original resolution after being pixelized
+     * @param chromakey boolean, whether or not the image should be chromakeyed after the resolution is reduced.
+     * @param options PixelizeOptions, the optional settings for this run.
+     */
+    public Pixelize(BufferedImage image, int resolution_coefficient, String filterType, boolean do_not_upscale, boolean chromakey, PixelizeOptions options){
+        this(image, resolution_coefficient, filterType, do_not_upscale, chromakey, options, null);
+    }
+
+    /**
+     * Pixelizes one frame of a sequence that has already been read in, reusing the colors of the blocks that haven't changed since the last frame.
+     * Only the fused pass can reuse blocks, frames that go through the stages pick every block.
+     * @param image BufferedImage, the frame to pixelize.
+     * @param resolution_coefficient int, The coefficient by which the image's resolution will be reduced by.
+     * @param filterType String, The type of dithering that is desired in the final image.
+     * @param do_not_upscale boolean, whether or not the image should be upscaled back to it's original resolution after being pixelized
+     * @param chromakey boolean, whether or not the image should be chromakeyed after the resolution is reduced.
+     * @param options PixelizeOptions, the optional settings for this run.
+     * @param cache CellCache, the blocks of the last frame, or null to pick every block.
+     */
+    public Pixelize(BufferedImage image, int resolution_coefficient, String filterType, boolean do_not_upscale, boolean chromakey, PixelizeOptions options, CellCache cache){
+        original = image;
+        finalImage = filter(resolution_coefficient, filterType, do_not_upscale, chromakey, true, options, cache);
+    }
 
-            BufferedImage reduced_image = reduce.output_image();
+    /**
+     * Pixelizes the original image, in one fused pass if nothing is being displayed and the image allows it, otherwise one stage at a time.
+     * @param resolution_coefficient int, The coefficient by which the image's resolution will be reduced by.
+     * @param filterType String, The type of dithering that is desired in the final image.
+     * @param do_not_upscale boolean, whether or not the image should be upscaled back to it's original resolution after being pixelized
+     * @param chromakey boolean, whether or not the image should be chromakeyed after the resolution is reduced.
+     * @param do_not_visualize boolean, whether the image at each stage is left undisplayed.
+     * @param options PixelizeOptions, the optional settings for this run.
+     * @param cache CellCache, the blocks of the last frame, or null.
+     * @return upscaled_image BufferedImage, the pixelized image.
+     */
+    private BufferedImage filter(int resolution_coefficient, String filterType, boolean do_not_upscale, boolean chromakey, boolean do_not_visualize, PixelizeOptions options, CellCache cache){
+        //a generated palette is made from this image, unless one was already made for the whole run.
+        boolean generate = !options.generate.isEmpty() && options.generated_palette == null;
+        Palette palette = generate ? PaletteGenerator.generate(original, options) : Palette.fromOptions(options);
+        if (options.indexed){
+            palette.requireIndexable("The indexed option");
+        }
 
-            //upscale code
-            UpscaleImage upscale = new UpscaleImage(reduced_image, resolution_coefficient, do_not_visualize);
+        //the fused pass skips every image in between, so it's used whenever nobody wants to see them.
+        //error diffusion needs every pixel before it picked first, which the fused pass doesn't do, so it always goes through the stages.
+        boolean diffuse = ReducePaletteDiffuse.kernel(filterType) != null;
+        if (do_not_visualize && options.fused && !diffuse && FusedPixelize.canFuse(original)){
+            ReducePalette reduce = colorPicker(filterType, palette, options);
+            return new FusedPixelize(original, resolution_coefficient, do_not_upscale, chromakey, reduce, options, cache).output_image();
+        }
+        if (cache != null){
+            cache.skipFrame();
+        }
+        BufferedImage upscaled_image = runStages(resolution_coefficient, filterType, do_not_upscale, chromakey, do_not_visualize, palette, options);
+        if (options.indexed){
+            return palette.toIndexed(upscaled_image, true);
+        }
+        return upscaled_image;
+    }
 
-            BufferedImage upscaled_image;
+    /**
+     * Passes the original image through each image filter one by one, making a new image at every stage.
+     * @param resolution_coefficient int, The coefficient by which the image's resolution will be reduced by.
+     * @param filterType String, The type of dithering that is desired in the final image.
+     * @param do_not_upscale boolean, whether or not the image should be upscaled back to it's original resolution after being pixelized
+     * @param chromakey boolean, whether or not the image should be chromakeyed after the resolution is reduced.
+     * @param do_not_visualize boolean, whether the image at each stage is left undisplayed.
+     * @param palette Palette, the palette the image is reduced to.
+     * @param options PixelizeOptions, the optional settings for this run.
+     * @return upscaled_image BufferedImage, the pixelized image.
+     */
+    private BufferedImage runStages(int resolution_coefficient, String filterType, boolean do_not_upscale, boolean chromakey, boolean do_not_visualize, Palette palette, PixelizeOptions options){
+        //downscale code
+        DownscaleImage downscale = new DownscaleImage(original, resolution_coefficient, do_not_visualize, options);
+        BufferedImage downscaled_image = downscale.output_image();
 
-            if (!do_not_upscale) {
-                upscaled_image = upscale.output_image();
-            }
-            else
-            {
-                upscaled_image = reduced_image;
-            }
+        //chromakey code
+        //this is so if the chromakey code is false it'll still pass through the previous step
+        BufferedImage gs_image = downscaled_image;
 
-            if (!do_not_save) {
-                saveFile(fileName, upscaled_image);
-            }
+        //actually if chromakey is true.
+        if (chromakey){
+            GreenScreen greenScreen = new GreenScreen(downscaled_image, do_not_visualize, options);
+            gs_image = greenScreen.output_image();
+        }
 
-            finalImage = upscaled_image;
+        //reduce palette code
+        ReducePalette reduce;
+
+        if (filterType.equals("dither")){
+            reduce = new ReducePaletteDith(gs_image, do_not_visualize, palette, options);
+        } else if(filterType.equals("random")){
+            reduce = new ReducePaletteRand(gs_image, do_not_visualize, palette, options);
+        } else if(ReducePaletteDiffuse.kernel(filterType) != null){
+            reduce = new ReducePaletteDiffuse(gs_image, do_not_visualize, palette, ReducePaletteDiffuse.kernel(filterType), options);
+        } else if(ReducePaletteOrdered.matrixSize(filterType) > 0){
+            reduce = new ReducePaletteOrdered(gs_image, do_not_visualize, palette, ReducePaletteOrdered.matrixSize(filterType), options);
+        } else{
+            reduce = new ReducePalette(gs_image, do_not_visualize, palette, options);
         }
 
+        BufferedImage reduced_image = reduce.output_image();
+
+        //upscale code
+        UpscaleImage upscale = new UpscaleImage(reduced_image, resolution_coefficient, do_not_visualize, options);
 
+        BufferedImage upscaled_image;
+
+        if (!do_not_upscale) {
+            upscaled_image = upscale.output_image();
+        }
+        else
+        {
+            upscaled_image = reduced_image;
+        }
+        return upscaled_image;
+    }
+
+    /**
+     * Makes the palette reducer for a filter type without filtering an image, for the fused pass to pick colors with.
+     * @param filterType String, The type of dithering that is desired in the final image.
+     * @param palette Palette, the palette colors are picked from.
+     * @param options PixelizeOptions, the optional settings for this run.
+     * @return reduce ReducePalette, the reducer.
+     */
+    static ReducePalette colorPicker(String filterType, Palette palette, PixelizeOptions options){
+        if (filterType.equals("dither")){
+            return new ReducePaletteDith(palette, options);
+        } else if(filterType.equals("random")){
+            return new ReducePaletteRand(palette, options);
+        } else if(ReducePaletteOrdered.matrixSize(filterType) > 0){
+            return new ReducePaletteOrdered(palette, ReducePaletteOrdered.matrixSize(filterType), options);
+        }
+        return new ReducePalette(palette, options);
     }
 
     /**
@@ -101,18 +259,33 @@ public class Pixelize {
         return can_read;
     }
 
+    /**
+     * The scale saved with an image, see ScaleMetadata.
+     * @param resolution_coefficient int, The coefficient by which the image's resolution will be reduced by.
+     * @param do_not_upscale boolean, whether or not the image is left at the lowered resolution.
+     * @param options PixelizeOptions, the optional settings for this run.
+     * @return scale int, the coefficient if the image is left small and the record_scale option is on, otherwise 0 for nothing recorded.
+     */
+    static int recordedScale(int resolution_coefficient, boolean do_not_upscale, PixelizeOptions options){
+        return options.record_scale && do_not_upscale ? resolution_coefficient : 0;
+    }
+
     /**
      * Saves the buffered image passed in as a file.
      * @param inFileName String, The name of the file passed in
-     * @param filtered_image Buffered Image, The image passed in to be saved.
+     * @param filtered_image RenderedImage, The image passed in to be saved.
+     * @param scale int, the scale recorded with the image, or 0 for none.
+     * @param encoder ImageEncoder, what saves the image, which also picks the file's extension.
      */
-    private void saveFile(String inFileName, BufferedImage filtered_image){
+    private void saveFile(String inFileName, RenderedImage filtered_image, int scale, ImageEncoder encoder){
         int period = inFileName.indexOf( "." );
         String fileExtension = inFileName.substring( period+1 );
-        String copyFileName = inFileName.substring( 0, period ) + "_pixelized." + fileExtension;
+        String copyFileName = inFileName.substring( 0, period ) + "_pixelized." + encoder.extension(fileExtension);
         try {
             File copiedFile = new File( copyFileName );
-            ImageIO.write( filtered_image, fileExtension,  copiedFile );
+            if (!encoder.write( filtered_image, fileExtension, copiedFile, scale )){
+                System.err.println( String.format("No writer for %s%n", copyFileName) );
+            }
         } catch (IOException e) {
             System.err.println( String.format("%s%n", e) );
         }
@@ -129,6 +302,11 @@ public class Pixelize {
      *             "none" = no dithering.
      *             "dither" = crosshatch dithering.
      *             "random" = randomized dithering.
+     *             "floyd-steinberg", "atkinson", "sierra-lite" = error diffusion with that kernel, see ReducePaletteDiffuse.
+     *             "bayer2", "bayer4", "bayer8" = ordered dithering with a Bayer matrix of that size, see ReducePaletteOrdered.
+     *             args[3] do_not_upscale boolean, whether the image is left at the lowered resolution.
+     *             args[4] chromakey boolean, whether the image is chromakeyed after the resolution is reduced.
+     *             args[5...] key=value options, see PixelizeOptions.
      */
     public static void main(String[] args) {
 
@@ -163,8 +341,9 @@ public class Pixelize {
         if (args.length > 4){
             chromakey = Boolean.parseBoolean(args[4]);
         }
+        PixelizeOptions options = PixelizeOptions.parse(args, 5);
         //initializing the code.
-        Pixelize finished_image = new Pixelize(fileName, resolution_coefficient, filterType, do_not_upscale, chromakey, false, false);
+        Pixelize finished_image = new Pixelize(fileName, resolution_coefficient, filterType, do_not_upscale, chromakey, false, false, options);
 
     }
 
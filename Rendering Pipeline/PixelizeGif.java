@@ -0,0 +1,567 @@
+/**
+ * Pixelizes an animated GIF, or a folder of frames, into an animated GIF in the output_images folder.
+ * <br>
+ * Frames are decoded one at a time, handed to a pool of workers that run them through Pixelize, and written out in order as each one is ready,
+ * so only a set number of frames are ever in memory and the whole animation never is. The palette is written once as the GIF's global color table,
+ * and every frame uses it, so none of the frames need a color table of their own.
+ * A GIF frame only holds the part that changed from the frame before, so each one is drawn over the frames before it, following the GIF's
+ * disposal methods, to get the whole frame before it's pixelized. A folder's frames are read in order of their file names and must all be the same size.
+ * With the incremental option the frames are filtered one after another instead, and the blocks that haven't changed keep their color from the frame
+ * before, see CellCache. How many blocks each frame reused is printed as it's filtered.
+ * <br>
+ * Compilation:  javac PixelizeGif.java <br>
+ * Execution:    java PixelizeGif input String, resolution_coefficient int, filterType String    <br>
+ * <br>
+ * commandline arguments:
+ *             args[0] input String, the GIF, or the folder of frames, being filtered.
+ *             args[1] resolution_coefficient int, the amount of downscaling and upscaling that will happen to the frames.
+ *             args[2] filterType String, the type of filtering that will be applied to the frames, see Pixelize.
+ *             args[3] do_not_upscale boolean, whether the frames are left at the lowered resolution.
+ *             args[4] chromakey boolean, whether the frames are chromakeyed after the resolution is reduced.
+ *             Any arguments after these are key=value options, see PixelizeOptions. workers and queue set how many frames are filtered and held at once,
+ *             and frame_delay sets the time between a folder's frames.
+ */
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class PixelizeGif {
+    private static final String IMAGE_FORMAT = "javax_imageio_gif_image_1.0";
+    private static final String STREAM_FORMAT = "javax_imageio_gif_stream_1.0";
+
+    private int frames_written = 0;
+
+    public PixelizeGif(String input, int resolution_coefficient, String filterType, boolean do_not_upscale, boolean chromakey, boolean do_not_save){
+        this(input, resolution_coefficient, filterType, do_not_upscale, chromakey, do_not_save, new PixelizeOptions());
+    }
+
+    /**
+     * The constructor of the PixelizeGif object. Pixelizes every frame and saves the animation as output_images/(the input's name).gif.
+     * @param input String, the GIF, or the folder of frames, being filtered.
+     * @param resolution_coefficient int, the amount of downscaling and upscaling that will happen to the frames.
+     * @param filterType String, the type of filtering that will be applied to the frames.
+     * @param do_not_upscale boolean, whether the frames are left at the lowered resolution.
+     * @param chromakey boolean, whether the frames are chromakeyed after the resolution is reduced.
+     * @param do_not_save boolean, whether the frames are only pixelized and never written, for timing.
+     * @param options PixelizeOptions, the optional settings for this run.
+     */
+    public PixelizeGif(String input, int resolution_coefficient, String filterType, boolean do_not_upscale, boolean chromakey, boolean do_not_save, PixelizeOptions options){
+        File source = new File(input);
+        File output = do_not_save ? null : new File("output_images/" + baseName(source) + ".gif");
+        long start = System.nanoTime();
+
+        try (FrameSource frames = source.isDirectory() ? new FolderFrames(source, options.frame_delay) : new GifFrames(source)) {
+            generateFrames(frames, output, resolution_coefficient, filterType, do_not_upscale, chromakey, options);
+        } catch (IOException | RuntimeException e) {
+            System.err.println(String.format("%s: %s%n", input, e));
+            return;
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("Pixelized %d frames in %.2f s, %.2f frames/s", frames_written, seconds, frames_written / seconds));
+    }
+
+    /**
+     * Reads, filters, and writes every frame. Frames are read and written on this thread, in order, and filtered on a pool of workers in between.
+     * @param frames FrameSource, where the frames come from.
+     * @param output File, where the GIF is written, or null if nothing is written.
+     * @param resolution_coefficient int, the amount of downscaling and upscaling that will happen to the frames.
+     * @param filterType String, the type of filtering that will be applied to the frames.
+     * @param do_not_upscale boolean, whether the frames are left at the lowered resolution.
+     * @param chromakey boolean, whether the frames are chromakeyed after the resolution is reduced.
+     * @param options PixelizeOptions, the optional settings for this run.
+     */
+    private void generateFrames(FrameSource frames, File output, int resolution_coefficient, String filterType, boolean do_not_upscale, boolean chromakey, PixelizeOptions options) throws IOException{
+        //an incremental frame needs the blocks of the one before it, so there's only one worker and it gets every thread.
+        int workers = options.incremental ? 1 : Math.max(1, options.workers);
+        int queue = options.queue > 0 ? options.queue : 2 * workers;
+        Frame first = frames.next();
+        //a generated palette is made from the first frame, since every frame shares the GIF's one color table.
+        if (!options.generate.isEmpty() && options.generated_palette == null && first != null){
+            options = options.copy();
+            options.generated_palette = PaletteGenerator.generate(first.image, options);
+        }
+        Palette palette = Palette.fromOptions(options).requireIndexable("A GIF");
+        CellCache cache = options.incremental ? new CellCache() : null;
+
+        ExecutorService filter_pool = Executors.newFixedThreadPool(workers);
+        //the frames being filtered, oldest first. The oldest is always the next one written, so the frames come out in order.
+        ArrayDeque<Future<Frame>> in_flight = new ArrayDeque<>();
+        GifSequence gif = output == null ? null : new GifSequence(output, palette);
+
+        try {
+            int frame_number = 0;
+            for (Frame frame = first; frame != null; frame = frames.next()){
+                //the workers share the processors, so each frame gets its share of the threads. Each frame gets its own noise for random dithering.
+                PixelizeOptions frame_options = options.copy();
+                frame_options.threads = Math.max(1, options.threads / workers);
+                frame_options.frame = options.frame + frame_number;
+                Frame source = frame;
+                int number = frame_number;
+                in_flight.add(filter_pool.submit(() -> filterFrame(source, number, resolution_coefficient, filterType, do_not_upscale, chromakey, palette, frame_options, cache)));
+                frame_number += 1;
+
+                if (in_flight.size() >= queue){
+                    writeFrame(gif, in_flight.remove(), frames.loops());
+                }
+            }
+            while (!in_flight.isEmpty()){
+                writeFrame(gif, in_flight.remove(), frames.loops());
+            }
+            if (gif != null){
+                gif.finish();
+            }
+        } finally {
+            filter_pool.shutdownNow();
+            if (gif != null){
+                gif.close();
+            }
+        }
+    }
+
+    /**
+     * Pixelizes one frame and turns it into an indexed image with the palette as its color table.
+     * With a cache, this has to be called for each frame in order, and prints how many of the frame's blocks were reused.
+     */
+    private static Frame filterFrame(Frame frame, int frame_number, int resolution_coefficient, String filterType, boolean do_not_upscale, boolean chromakey, Palette palette, PixelizeOptions options, CellCache cache){
+        Pixelize filter = new Pixelize(frame.image, resolution_coefficient, filterType, do_not_upscale, chromakey, options, cache);
+        if (cache != null){
+            System.out.printf("Frame %d: reused %d of %d blocks (%.1f%%)%n", frame_number, cache.reusedCells(), cache.cellCount(), 100 * cache.hitRate());
+        }
+        return new Frame(palette.toIndexed(filter.output_image()), frame.delay);
+    }
+
+    /**
+     * Waits for a frame to finish filtering and writes it.
+     */
+    private void writeFrame(GifSequence gif, Future<Frame> filtered, int loops) throws IOException{
+        Frame frame;
+        try {
+            frame = filtered.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a frame", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException){
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        if (gif != null){
+            gif.write(frame, loops);
+        }
+        frames_written += 1;
+    }
+
+    //the name of a file without its extension, or the name of a folder.
+    private static String baseName(File source){
+        String name = source.getName();
+        int period = name.lastIndexOf(".");
+        return period > 0 && !source.isDirectory() ? name.substring(0, period) : name;
+    }
+
+    /**
+     * A frame of the animation, and how long it's shown for in hundredths of a second.
+     */
+    private static final class Frame{
+        final BufferedImage image;
+        final int delay;
+
+        Frame(BufferedImage image, int delay){
+            this.image = image;
+            this.delay = delay;
+        }
+    }
+
+    /**
+     * Where the frames come from. Frames are read one at a time, in the order they're shown.
+     */
+    private interface FrameSource extends Closeable{
+        /**
+         * @return frame Frame, the next whole frame, or null once there are no more.
+         */
+        Frame next() throws IOException;
+
+        /**
+         * @return loops int, how many times the animation repeats, 0 for forever.
+         */
+        int loops();
+    }
+
+    /**
+     * The frames of a GIF, each drawn over the ones before it. The frame being drawn on is kept, along with whatever a
+     * "restoreToPrevious" frame covers, so the memory used is a couple of frames no matter how long the GIF is.
+     */
+    private static final class GifFrames implements FrameSource{
+        private final ImageInputStream stream;
+        private final ImageReader reader;
+        private int screen_width = 0;
+        private int screen_height = 0;
+        private int loops = 0;
+        private int index = 0;
+        private BufferedImage canvas;
+        //what the last frame asked to be done with the area it covered before the next frame is drawn.
+        private String disposal = "none";
+        private Rectangle disposal_area;
+        private int[] covered;
+
+        GifFrames(File file) throws IOException{
+            stream = ImageIO.createImageInputStream(file);
+            if (stream == null){
+                throw new IOException("Not a readable file: " + file);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext()){
+                stream.close();
+                throw new IOException("Not a readable image: " + file);
+            }
+            reader = readers.next();
+            //frames are only read forwards, so the reader can let go of the ones it's passed.
+            reader.setInput(stream, true, false);
+
+            IIOMetadata stream_metadata = reader.getStreamMetadata();
+            if (stream_metadata != null && STREAM_FORMAT.equals(stream_metadata.getNativeMetadataFormatName())){
+                IIOMetadataNode screen = child((IIOMetadataNode)stream_metadata.getAsTree(STREAM_FORMAT), "LogicalScreenDescriptor");
+                if (screen != null){
+                    screen_width = Integer.parseInt(screen.getAttribute("logicalScreenWidth"));
+                    screen_height = Integer.parseInt(screen.getAttribute("logicalScreenHeight"));
+                }
+            }
+        }
+
+        public Frame next() throws IOException{
+            IIOMetadata metadata;
+            BufferedImage raw;
+            try {
+                metadata = reader.getImageMetadata(index);
+                raw = reader.read(index);
+            } catch (IndexOutOfBoundsException e) {
+                return null;
+            }
+
+            int left = 0;
+            int top = 0;
+            int delay = 0;
+            String frame_disposal = "none";
+            if (metadata != null && IMAGE_FORMAT.equals(metadata.getNativeMetadataFormatName())){
+                IIOMetadataNode root = (IIOMetadataNode)metadata.getAsTree(IMAGE_FORMAT);
+                IIOMetadataNode descriptor = child(root, "ImageDescriptor");
+                if (descriptor != null){
+                    left = Integer.parseInt(descriptor.getAttribute("imageLeftPosition"));
+                    top = Integer.parseInt(descriptor.getAttribute("imageTopPosition"));
+                }
+                IIOMetadataNode control = child(root, "GraphicControlExtension");
+                if (control != null){
+                    frame_disposal = control.getAttribute("disposalMethod");
+                    delay = Integer.parseInt(control.getAttribute("delayTime"));
+                }
+                if (index == 0){
+                    loops = loopCount(root);
+                }
+            }
+
+            if (canvas == null){
+                //some GIFs leave the screen size as 0, in which case the first frame sets it.
+                int width = screen_width > 0 ? screen_width : left + raw.getWidth();
+                int height = screen_height > 0 ? screen_height : top + raw.getHeight();
+                canvas = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            }
+            dispose();
+
+            Rectangle area = new Rectangle(left, top, raw.getWidth(), raw.getHeight()).intersection(new Rectangle(0, 0, canvas.getWidth(), canvas.getHeight()));
+            if (frame_disposal.equals("restoreToPrevious") && !area.isEmpty()){
+                covered = canvas.getRGB(area.x, area.y, area.width, area.height, null, 0, area.width);
+            }
+            Graphics2D graphics = canvas.createGraphics();
+            graphics.drawImage(raw, left, top, null);
+            graphics.dispose();
+            disposal = frame_disposal;
+            disposal_area = area;
+            index += 1;
+
+            BufferedImage frame = new BufferedImage(canvas.getWidth(), canvas.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            int[] canvas_pixels = ImageEditParent.pixelData(canvas);
+            System.arraycopy(canvas_pixels, 0, ImageEditParent.pixelData(frame), 0, canvas_pixels.length);
+            return new Frame(frame, delay);
+        }
+
+        //undoes the last frame if it asked to be, before the next one is drawn.
+        private void dispose(){
+            if (disposal_area == null || disposal_area.isEmpty()){
+                return;
+            }
+            if (disposal.equals("restoreToBackgroundColor")){
+                Graphics2D graphics = canvas.createGraphics();
+                graphics.setComposite(AlphaComposite.Clear);
+                graphics.fill(disposal_area);
+                graphics.dispose();
+            } else if (disposal.equals("restoreToPrevious") && covered != null){
+                canvas.setRGB(disposal_area.x, disposal_area.y, disposal_area.width, disposal_area.height, covered, 0, disposal_area.width);
+                covered = null;
+            }
+        }
+
+        //reads the repeat count from the NETSCAPE2.0 extension, which is 0 for forever. A GIF without one is shown once.
+        private static int loopCount(IIOMetadataNode root){
+            IIOMetadataNode extensions = child(root, "ApplicationExtensions");
+            if (extensions == null){
+                return 1;
+            }
+            for (int i = 0; i < extensions.getLength(); i++){
+                IIOMetadataNode extension = (IIOMetadataNode)extensions.item(i);
+                byte[] data = (byte[])extension.getUserObject();
+                if (extension.getAttribute("applicationID").equals("NETSCAPE") && data != null && data.length >= 3 && data[0] == 1){
+                    return (data[1] & 0xFF) | ((data[2] & 0xFF) << 8);
+                }
+            }
+            return 1;
+        }
+
+        public int loops(){ return loops; }
+
+        public void close() throws IOException{
+            reader.dispose();
+            stream.close();
+        }
+    }
+
+    /**
+     * The frames in a folder, read one file at a time in order of their names. Files that aren't images are skipped.
+     */
+    private static final class FolderFrames implements FrameSource{
+        private final File[] files;
+        private final int delay;
+        private int index = 0;
+
+        FolderFrames(File folder, int delay) throws IOException{
+            File[] listed = folder.listFiles(File::isFile);
+            if (listed == null){
+                throw new IOException("Not a readable directory: " + folder);
+            }
+            Arrays.sort(listed);
+            files = listed;
+            this.delay = delay;
+        }
+
+        public Frame next() throws IOException{
+            while (index < files.length){
+                File file = files[index];
+                index += 1;
+                BufferedImage image = ImageIO.read(file);
+                if (image != null){
+                    return new Frame(image, delay);
+                }
+                System.err.println(String.format("Not a readable image: %s%n", file));
+            }
+            return null;
+        }
+
+        public int loops(){ return 0; }
+
+        public void close(){ }
+    }
+
+    /**
+     * An animated GIF being written one frame at a time. The header and the palette are written with the first frame,
+     * and each frame is written as soon as it's handed over. The frames go into a temporary file that's only moved over the output once the GIF
+     * is finished, so a run that fails partway through leaves the last finished GIF, or nothing, rather than half of one.
+     */
+    private static final class GifSequence implements Closeable{
+        private final File output;
+        private final File temporary;
+        private boolean finished = false;
+        private final Palette palette;
+        private final ImageWriter writer;
+        private final ImageWriteParam param;
+        private ImageOutputStream stream;
+        private int width;
+        private int height;
+
+        GifSequence(File output, Palette palette){
+            this.output = output;
+            temporary = new File(output.getPath() + ".tmp");
+            this.palette = palette;
+            writer = ImageIO.getImageWritersByFormatName("gif").next();
+            param = writer.getDefaultWriteParam();
+        }
+
+        /**
+         * Writes one frame, starting the file with it if it's the first.
+         * @param frame Frame, an indexed frame with the palette's color table.
+         * @param loops int, how many times the animation repeats, written with the first frame.
+         */
+        void write(Frame frame, int loops) throws IOException{
+            boolean first = stream == null;
+            if (first){
+                start(frame.image.getWidth(), frame.image.getHeight());
+            } else if (frame.image.getWidth() != width || frame.image.getHeight() != height){
+                throw new IllegalArgumentException(String.format("Every frame must be the same size, got %dx%d after %dx%d",
+                        frame.image.getWidth(), frame.image.getHeight(), width, height));
+            }
+
+            int transparent = palette.transparentIndex();
+            //createFromRenderedImage would give the default color table for TYPE_BYTE_INDEXED, not the palette's, so the frame's own is used.
+            //the writer leaves out a frame's color table when it's the same as the global one.
+            IIOMetadata metadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(frame.image), param);
+            IIOMetadataNode root = new IIOMetadataNode(IMAGE_FORMAT);
+            IIOMetadataNode control = new IIOMetadataNode("GraphicControlExtension");
+            //every frame is whole, so it's cleared away before the next one, otherwise the last frame would show through the next one's transparent pixels.
+            control.setAttribute("disposalMethod", transparent >= 0 ? "restoreToBackgroundColor" : "none");
+            control.setAttribute("userInputFlag", "FALSE");
+            control.setAttribute("transparentColorFlag", transparent >= 0 ? "TRUE" : "FALSE");
+            control.setAttribute("delayTime", Integer.toString(frame.delay));
+            control.setAttribute("transparentColorIndex", Integer.toString(Math.max(transparent, 0)));
+            root.appendChild(control);
+            if (first && loops != 1){
+                IIOMetadataNode extensions = new IIOMetadataNode("ApplicationExtensions");
+                IIOMetadataNode extension = new IIOMetadataNode("ApplicationExtension");
+                extension.setAttribute("applicationID", "NETSCAPE");
+                extension.setAttribute("authenticationCode", "2.0");
+                extension.setUserObject(new byte[]{1, (byte)(loops & 0xFF), (byte)((loops >> 8) & 0xFF)});
+                extensions.appendChild(extension);
+                root.appendChild(extensions);
+            }
+            metadata.mergeTree(IMAGE_FORMAT, root);
+            writer.writeToSequence(new IIOImage(frame.image, null, metadata), param);
+        }
+
+        //opens the file and writes the header, with the palette as the global color table.
+        private void start(int width, int height) throws IOException{
+            this.width = width;
+            this.height = height;
+            if (temporary.exists()){
+                temporary.delete();
+            }
+            stream = ImageIO.createImageOutputStream(temporary);
+            if (stream == null){
+                throw new IOException("Can't write to " + output);
+            }
+            writer.setOutput(stream);
+
+            IndexColorModel colors = palette.colorModel();
+            int background = Math.max(palette.transparentIndex(), 0);
+            IIOMetadata metadata = writer.getDefaultStreamMetadata(param);
+            IIOMetadataNode root = new IIOMetadataNode(STREAM_FORMAT);
+            IIOMetadataNode screen = new IIOMetadataNode("LogicalScreenDescriptor");
+            screen.setAttribute("logicalScreenWidth", Integer.toString(width));
+            screen.setAttribute("logicalScreenHeight", Integer.toString(height));
+            screen.setAttribute("colorResolution", "8");
+            screen.setAttribute("pixelAspectRatio", "0");
+            root.appendChild(screen);
+            IIOMetadataNode table = new IIOMetadataNode("GlobalColorTable");
+            table.setAttribute("sizeOfGlobalColorTable", Integer.toString(colors.getMapSize()));
+            table.setAttribute("backgroundColorIndex", Integer.toString(background));
+            table.setAttribute("sortFlag", "FALSE");
+            for (int i = 0; i < colors.getMapSize(); i++){
+                IIOMetadataNode entry = new IIOMetadataNode("ColorTableEntry");
+                entry.setAttribute("index", Integer.toString(i));
+                entry.setAttribute("red", Integer.toString(colors.getRed(i)));
+                entry.setAttribute("green", Integer.toString(colors.getGreen(i)));
+                entry.setAttribute("blue", Integer.toString(colors.getBlue(i)));
+                table.appendChild(entry);
+            }
+            root.appendChild(table);
+            metadata.mergeTree(STREAM_FORMAT, root);
+            writer.prepareWriteSequence(metadata);
+        }
+
+        //writes the end of the file. Nothing is written if there were no frames.
+        void finish() throws IOException{
+            if (stream != null){
+                writer.endWriteSequence();
+                finished = true;
+            }
+        }
+
+        //moves the GIF into place if it was finished, otherwise deletes what was written of it.
+        public void close() throws IOException{
+            writer.dispose();
+            if (stream == null){
+                return;
+            }
+            stream.close();
+            if (finished){
+                Files.move(temporary.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.deleteIfExists(temporary.toPath());
+            }
+        }
+    }
+
+    //the first child of a metadata node with the name given, or null if there isn't one.
+    private static IIOMetadataNode child(IIOMetadataNode node, String name){
+        for (int i = 0; i < node.getLength(); i++){
+            if (node.item(i).getNodeName().equals(name)){
+                return (IIOMetadataNode)node.item(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Passes in the commandline arguments, produces error messages if not passed in, and runs the PixelizeGif program using those commandline arguments.
+     * @param args String[], The arguments passed in from the commandline, see the top of this file.
+     */
+    public static void main(String[] args) {
+        //nothing is displayed, so it never needs a display.
+        System.setProperty("java.awt.headless", "true");
+
+        // If the user misses a commandline argument, show them a helpful usage statement
+        String usageStatement = "USAGE: java PixelizeGif filePath"
+                + "\nFor example:"
+                + "\n\tjava PixelizeGif animation.gif 4 bayer4"
+                + "\nThe input can be a GIF or a folder of frames.";
+
+        // Parse commandline arguments
+        String fileName;
+        String filterType = "";
+        int resolution_coefficient = 2;
+        boolean do_not_upscale = false;
+        boolean chromakey = false;
+        if (args.length > 0) {
+            fileName = args[0];
+        } else {
+            System.out.println(usageStatement);
+            return;
+        }
+        if (args.length > 1) {
+            resolution_coefficient = Integer.parseInt(args[1]);
+        }
+        if (args.length > 2) {
+            filterType = args[2];
+        }
+        if (args.length > 3) {
+            do_not_upscale = Boolean.parseBoolean(args[3]);
+        }
+        if (args.length > 4) {
+            chromakey = Boolean.parseBoolean(args[4]);
+        }
+        PixelizeOptions options = PixelizeOptions.parse(args, 5);
+        PixelizeGif gif = new PixelizeGif(fileName, resolution_coefficient, filterType, do_not_upscale, chromakey, false, options);
+    }
+}
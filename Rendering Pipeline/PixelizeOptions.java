@@ -0,0 +1,229 @@
+/**
+ * Holds the optional settings for a pixelize run, the ones that don't have their own positional commandline argument.
+ * Any commandline arguments after the positional ones are read as key=value pairs, for example search=kdtree.
+ * <br>
+ * Options:
+ *             search String, how the closest palette color is found for each pixel. Every search gives the same image.
+ *             "lut" = a precomputed lookup table (default).
+ *             "kdtree" = a k-d tree over the palette colors.
+ *             "linear" = scores every color in the palette.
+ *             "vector" = scores several palette colors at once, needs Java 17 or newer started with --add-modules jdk.incubator.vector, otherwise it's "linear".
+ *             metric String, how the distance between a pixel and a palette color is measured, see ColorMetric. Defaults to "manhattan",
+ *             the sum of the channel differences. Any other metric uses its own search, so search only picks between "linear" and its k-d tree.
+ *             The dithering filters still judge how close the two best colors are by their channel differences.
+ *             fused boolean, whether Pixelize runs every stage in one pass when nothing is being displayed. Defaults to true,
+ *             false makes every stage produce its own image like it does when visualizing.
+ *             threads int, how many threads each filter spreads its rows over. Defaults to the number of processors.
+ *             seed long, the seed for random dithering. The same seed always gives the same image. Defaults to 0.
+ *             frame long, the frame number for random dithering, mixed in with the seed so each frame of an animation can get its own noise. Defaults to 0.
+ *             workers int, how many images MassPixelize reads, filters, and saves at once, or how many frames PixelizeGif filters at once.
+ *             Defaults to the number of processors.
+ *             queue int, the most images MassPixelize holds in memory at once, counting every image being read, filtered, or saved,
+ *             or the most frames PixelizeGif holds. Defaults to 0, which is twice the number of workers.
+ *             frame_delay int, how long each frame from a folder of frames is shown in PixelizeGif, in hundredths of a second. Defaults to 10.
+ *             incremental boolean, whether PixelizeGif reuses the colors of the blocks that haven't changed since the frame before, see CellCache.
+ *             The frames are then filtered one at a time with every thread, since each one needs the one before it. Defaults to false.
+ *             key_color String, the color chromakeying removes, as hex like 00ff00 or #00ff00. Defaults to pure green.
+ *             key_tolerance int, how far a color can be from the key color and still be removed, as a sum of channel differences. Defaults to 330.
+ *             key_softness int, how far past the tolerance pixels are faded instead of removed, for a soft edge. Defaults to 0, a hard edge.
+ *             spill boolean, whether the key color's tint is taken out of the pixels chromakeying keeps. Defaults to false. See ChromaKey.
+ *             downscale String, the windows DownscaleImage takes the mean of.
+ *             "centred" = a window centred on the corner of each block, the way it has always worked (default).
+ *             "box" = each block on its own, with the blocks at the edges only covering what's inside the image.
+ *             lazy_upscale boolean, whether MassPixelize saves the upscaled images through an UpscaledView, which only scales one row at a time
+ *             as the file is written instead of holding the full size image. Defaults to false.
+ *             strip int, how many rows of blocks Pixelize and MassPixelize read, pixelize and write at a time, so only one strip of the image is
+ *             ever in memory, see StripPixelize. Defaults to 0, which reads the whole image.
+ *             indexed boolean, whether the pixelized image holds palette indexes with the palette as its color table instead of full colors,
+ *             packed 1, 2 or 4 bits a pixel when the palette has few enough colors, see Palette.indexedImage. The palette can have at most 256 colors. Defaults to false.
+ *             record_scale boolean, whether Pixelize and MassPixelize record the coefficient with images left at the lowered resolution, so they
+ *             can be scaled up later by whatever displays them or by ExpandImage, see ScaleMetadata. Defaults to false.
+ *             encoder String, how Pixelize and MassPixelize save images, "imageio", "png" or "qoi", see ImageEncoder. Defaults to "imageio".
+ *             png_compression int, the PNG compression level, from 0 for none to 9 for the smallest files. Defaults to -1, the encoder's own default.
+ *             png_filter String, the row filter the png encoder uses, see PngEncoder. Defaults to "adaptive".
+ *             cache boolean, whether MassPixelize skips the images whose input and settings haven't changed since they were last saved, see OutputCache.
+ *             Defaults to false.
+ *             palette String, the name of a palette in the palettes file to use instead of palette.csv, for example palette=grayscale.
+ *             palettes String, the file named palettes are read from. Defaults to "saved palettes.txt".
+ *             generate String, makes the palette from the image instead of reading it, "median-cut" or "k-means", see PaletteGenerator.
+ *             Pixelize makes it from the image, PixelizeGif from the first frame, and MassPixelize makes one from the whole folder that every image shares.
+ *             Defaults to "", which reads the palette.
+ *             colors int, how many colors a generated palette has. Defaults to 16.
+ *             samples int, about how many pixels are counted to generate a palette, shared between the images of a folder. Defaults to 1048576.
+ *             serpentine boolean, whether error diffusion scans every other row right to left. Defaults to true. A serpentine scan runs on one thread,
+ *             false scans every row left to right and spreads the rows over the threads, see ReducePaletteDiffuse.
+ *             spread int, how far ordered dithering moves each channel, from about -spread/2 to +spread/2. Defaults to 64.
+ * <br>
+ * This file has no testing functionality. Running it from the terminal will do nothing.
+ */
+
+public class PixelizeOptions {
+    public String search_type = "lut";
+    public String metric = "manhattan";
+    public boolean fused = true;
+    public int threads = Runtime.getRuntime().availableProcessors();
+    public long seed = 0;
+    public long frame = 0;
+    public int workers = Runtime.getRuntime().availableProcessors();
+    public int queue = 0;
+    public int frame_delay = 10;
+    public boolean incremental = false;
+    public int key_color = 0x00FF00;
+    public int key_tolerance = 330;
+    public int key_softness = 0;
+    public boolean spill = false;
+    public String downscale = "centred";
+    public boolean lazy_upscale = false;
+    public int strip = 0;
+    public boolean indexed = false;
+    public boolean record_scale = false;
+    public String encoder = "imageio";
+    public int png_compression = -1;
+    public String png_filter = "adaptive";
+    public boolean cache = false;
+    public String palette = "";
+    public String palettes = "saved palettes.txt";
+    public String generate = "";
+    public int colors = 16;
+    public int samples = 1 << 20;
+    //a palette that has already been generated for this run, which is used instead of reading one. It isn't a commandline option.
+    public Palette generated_palette = null;
+    public boolean serpentine = true;
+    public int spread = 64;
+
+    /**
+     * Reads key=value pairs from the commandline into a new set of options. Anything not recognised is reported and skipped.
+     * @param args String[], the commandline arguments.
+     * @param first int, the index of the first key=value argument.
+     * @return options PixelizeOptions, the options with every recognised argument applied.
+     */
+    public static PixelizeOptions parse(String[] args, int first){
+        PixelizeOptions options = new PixelizeOptions();
+        for (int i = first; i < args.length; i++){
+            int equals = args[i].indexOf("=");
+            if (equals < 0 || !options.set(args[i].substring(0, equals), args[i].substring(equals + 1))){
+                System.err.println("Unrecognised option: " + args[i]);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Sets a single option by name.
+     * @param key String, the name of the option.
+     * @param value String, the value of the option.
+     * @return recognised boolean, false if there is no option with that name.
+     */
+    public boolean set(String key, String value){
+        if (key.equals("search")){
+            search_type = value;
+        } else if (key.equals("fused")){
+            fused = Boolean.parseBoolean(value);
+        } else if (key.equals("threads")){
+            threads = Integer.parseInt(value);
+        } else if (key.equals("seed")){
+            seed = Long.parseLong(value);
+        } else if (key.equals("frame")){
+            frame = Long.parseLong(value);
+        } else if (key.equals("workers")){
+            workers = Integer.parseInt(value);
+        } else if (key.equals("queue")){
+            queue = Integer.parseInt(value);
+        } else if (key.equals("frame_delay")){
+            frame_delay = Integer.parseInt(value);
+        } else if (key.equals("incremental")){
+            incremental = Boolean.parseBoolean(value);
+        } else if (key.equals("downscale")){
+            downscale = value;
+        } else if (key.equals("lazy_upscale")){
+            lazy_upscale = Boolean.parseBoolean(value);
+        } else if (key.equals("strip")){
+            strip = Integer.parseInt(value);
+        } else if (key.equals("indexed")){
+            indexed = Boolean.parseBoolean(value);
+        } else if (key.equals("record_scale")){
+            record_scale = Boolean.parseBoolean(value);
+        } else if (key.equals("encoder")){
+            encoder = value;
+        } else if (key.equals("png_compression")){
+            png_compression = Integer.parseInt(value);
+            //checked here, since the png encoder's Deflater would fail on every image and ImageIO would quietly use 9.
+            if (png_compression < -1 || png_compression > 9){
+                throw new IllegalArgumentException(String.format("png_compression must be from 0 to 9, or -1 for the default, got %d", png_compression));
+            }
+        } else if (key.equals("png_filter")){
+            png_filter = value;
+        } else if (key.equals("cache")){
+            cache = Boolean.parseBoolean(value);
+        } else if (key.equals("palette")){
+            palette = value;
+        } else if (key.equals("palettes")){
+            palettes = value;
+        } else if (key.equals("generate")){
+            generate = value;
+        } else if (key.equals("colors")){
+            colors = Integer.parseInt(value);
+        } else if (key.equals("samples")){
+            samples = Integer.parseInt(value);
+        } else if (key.equals("serpentine")){
+            serpentine = Boolean.parseBoolean(value);
+        } else if (key.equals("spread")){
+            spread = Integer.parseInt(value);
+        } else if (key.equals("metric")){
+            metric = value;
+        } else if (key.equals("key_color")){
+            key_color = Integer.parseInt(value.startsWith("#") ? value.substring(1) : value, 16) & 0xFFFFFF;
+        } else if (key.equals("key_tolerance")){
+            key_tolerance = Integer.parseInt(value);
+        } else if (key.equals("key_softness")){
+            key_softness = Integer.parseInt(value);
+        } else if (key.equals("spill")){
+            spill = Boolean.parseBoolean(value);
+        }
+        else
+        {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Makes a separate set of options with the same settings, so one can be changed without changing the other.
+     * @return copy PixelizeOptions, the copied options.
+     */
+    public PixelizeOptions copy(){
+        PixelizeOptions copy = new PixelizeOptions();
+        copy.search_type = search_type;
+        copy.fused = fused;
+        copy.threads = threads;
+        copy.seed = seed;
+        copy.frame = frame;
+        copy.workers = workers;
+        copy.queue = queue;
+        copy.frame_delay = frame_delay;
+        copy.incremental = incremental;
+        copy.downscale = downscale;
+        copy.lazy_upscale = lazy_upscale;
+        copy.strip = strip;
+        copy.indexed = indexed;
+        copy.record_scale = record_scale;
+        copy.encoder = encoder;
+        copy.png_compression = png_compression;
+        copy.png_filter = png_filter;
+        copy.cache = cache;
+        copy.palette = palette;
+        copy.palettes = palettes;
+        copy.generate = generate;
+        copy.colors = colors;
+        copy.samples = samples;
+        copy.generated_palette = generated_palette;
+        copy.serpentine = serpentine;
+        copy.spread = spread;
+        copy.metric = metric;
+        copy.key_color = key_color;
+        copy.key_tolerance = key_tolerance;
+        copy.key_softness = key_softness;
+        copy.spill = spill;
+        return copy;
+    }
+}
@@ -0,0 +1,357 @@
+/**
+ * Saves PNG files with a compression level and row filter that can be set, which ImageIO's PNG writer doesn't allow for the filter.
+ * Images with an IndexColorModel are saved as palette PNGs at 1, 2, 4 or 8 bits a pixel, with the transparent entry kept,
+ * everything else as 8 bit RGB, or RGBA if it has alpha. Formats other than PNG are saved with an ImageIOEncoder.
+ * <br>
+ * Each row is filtered before it's compressed, which makes it smaller by storing each byte as the difference from one next to it:
+ *             "none" = the bytes as they are.
+ *             "sub" = the difference from the pixel to the left.
+ *             "up" = the difference from the pixel above.
+ *             "average" = the difference from the mean of the pixels to the left and above.
+ *             "paeth" = the difference from whichever of the left, above and upper left pixels is closest to left + above - upper left.
+ *             "adaptive" = tries every filter on each row and keeps the one whose bytes add up to the least, counting them as signed (default).
+ *             Palette rows are always left unfiltered, since the differences between palette indexes don't mean anything.
+ * Pixelized images are runs of the same color, which "none" and "sub" already compress well at low levels, and they are the quickest.
+ * <br>
+ * The rows are asked for one at a time and compressed as they come, into IDAT chunks of up to 64 KB, so a view like StripPixelize never has
+ * to be built whole. Each thread keeps its Deflater and its row buffers between images.
+ * <br>
+ * This file has no testing functionality. Running it from the terminal will do nothing.
+ */
+
+import java.awt.Rectangle;
+import java.awt.image.ColorModel;
+import java.awt.image.IndexColorModel;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+public class PngEncoder implements ImageEncoder{
+    private static final byte[] SIGNATURE = {(byte)137, 80, 78, 71, 13, 10, 26, 10};
+    private static final String[] FILTERS = {"none", "sub", "up", "average", "paeth"};
+    private static final int ADAPTIVE = FILTERS.length;
+    //the order adaptive tries the filters in, up first since rows repeated by upscaling come out as all zeros with it, which nothing beats.
+    private static final int[] ADAPTIVE_ORDER = {2, 0, 1, 3, 4};
+    //the most data put in one IDAT chunk.
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private final int filter;
+    private final ImageIOEncoder other_formats;
+    private final ThreadLocal<Deflater> deflaters;
+    private final ThreadLocal<Rows> rows = ThreadLocal.withInitial(Rows::new);
+
+    /**
+     * The constructor of the PngEncoder object.
+     * @param compression_level int, the compression level from 0, none, to 9, the smallest, or -1 for the Deflater's default of 6.
+     * @param filter String, the row filter, see the list above.
+     */
+    public PngEncoder(int compression_level, String filter){
+        this.filter = filterNumber(filter);
+        other_formats = new ImageIOEncoder(compression_level);
+        deflaters = ThreadLocal.withInitial(() -> new Deflater(compression_level));
+    }
+
+    private static int filterNumber(String name){
+        if (name.equals("adaptive")){
+            return ADAPTIVE;
+        }
+        for (int i = 0; i < FILTERS.length; i++){
+            if (FILTERS[i].equals(name)){
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown PNG filter \"%s\", the filters are: none, sub, up, average, paeth, adaptive", name));
+    }
+
+    public boolean write(RenderedImage image, String format, File file, int scale) throws IOException{
+        if (!ScaleMetadata.isPng(format)){
+            return other_formats.write(image, format, file, scale);
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        ColorModel color_model = image.getColorModel();
+        IndexColorModel palette = color_model instanceof IndexColorModel ? (IndexColorModel)color_model : null;
+        boolean alpha = palette == null && color_model.hasAlpha();
+        int bit_depth = palette == null ? 8 : paletteDepth(palette.getPixelSize());
+        int channels = palette != null ? 1 : (alpha ? 4 : 3);
+        //the bytes in a row, and how far back the filters look for the pixel to the left.
+        int row_bytes = (width * channels * bit_depth + 7) / 8;
+        int pixel_bytes = Math.max(1, channels * bit_depth / 8);
+
+        Rows buffers = rows.get();
+        buffers.ensure(width, row_bytes);
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+
+        try (DataOutputStream out = new DataOutputStream(ImageIOEncoder.openBuffered(file))){
+            out.write(SIGNATURE);
+            ChunkBuilder header = new ChunkBuilder();
+            header.data.writeInt(width);
+            header.data.writeInt(height);
+            header.data.writeByte(bit_depth);
+            header.data.writeByte(palette != null ? 3 : (alpha ? 6 : 2));
+            header.data.writeByte(0);
+            header.data.writeByte(0);
+            header.data.writeByte(0);
+            header.writeTo(out, "IHDR");
+            if (palette != null){
+                writePalette(out, palette);
+            }
+            if (scale > 0){
+                ChunkBuilder text = new ChunkBuilder();
+                text.data.write((ScaleMetadata.KEYWORD + "\0" + scale).getBytes(StandardCharsets.ISO_8859_1));
+                text.writeTo(out, "tEXt");
+            }
+
+            IdatStream idat = new IdatStream(out);
+            DeflaterOutputStream compressed = new DeflaterOutputStream(idat, deflater, CHUNK_SIZE);
+            byte[] previous = buffers.previous;
+            byte[] current = buffers.current;
+            Arrays.fill(previous, 0, row_bytes, (byte)0);
+            for (int row = 0; row < height; row++){
+                if (palette != null){
+                    image.getData(new Rectangle(image.getMinX(), row, width, 1)).getSamples(image.getMinX(), row, width, 1, 0, buffers.pixels);
+                    packIndexes(buffers.pixels, width, bit_depth, current);
+                } else {
+                    ImageEncoder.argbRow(image, row, buffers.pixels);
+                    toBytes(buffers.pixels, width, alpha, current);
+                }
+                int chosen = palette != null ? 0 : filter;
+                byte[] filtered = filterRow(chosen, current, previous, row_bytes, pixel_bytes, buffers);
+                compressed.write(filtered, 0, row_bytes + 1);
+                byte[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+            compressed.finish();
+            idat.flushChunk();
+            new ChunkBuilder().writeTo(out, "IEND");
+        }
+        //the scale is in the file, and a sidecar would be read before it.
+        ScaleMetadata.removeSidecar(file);
+        return true;
+    }
+
+    //the PNG bit depth for palette indexes of a given size, which has to be 1, 2, 4 or 8.
+    private static int paletteDepth(int pixel_size){
+        if (pixel_size <= 1){
+            return 1;
+        } else if (pixel_size == 2){
+            return 2;
+        } else if (pixel_size <= 4){
+            return 4;
+        }
+        return 8;
+    }
+
+    //writes the PLTE chunk, and the tRNS chunk if any entry isn't fully opaque.
+    private static void writePalette(DataOutputStream out, IndexColorModel palette) throws IOException{
+        int size = palette.getMapSize();
+        ChunkBuilder colors = new ChunkBuilder();
+        int last_translucent = -1;
+        for (int i = 0; i < size; i++){
+            colors.data.writeByte(palette.getRed(i));
+            colors.data.writeByte(palette.getGreen(i));
+            colors.data.writeByte(palette.getBlue(i));
+            if (palette.getAlpha(i) != 255){
+                last_translucent = i;
+            }
+        }
+        colors.writeTo(out, "PLTE");
+        //tRNS only needs to go as far as the last entry that isn't opaque, the rest are taken as opaque.
+        if (last_translucent >= 0){
+            ChunkBuilder alphas = new ChunkBuilder();
+            for (int i = 0; i <= last_translucent; i++){
+                alphas.data.writeByte(palette.getAlpha(i));
+            }
+            alphas.writeTo(out, "tRNS");
+        }
+    }
+
+    //packs a row of palette indexes into bytes, the first pixel in the highest bits.
+    private static void packIndexes(int[] indexes, int width, int bit_depth, byte[] row){
+        if (bit_depth == 8){
+            for (int col = 0; col < width; col++){
+                row[col] = (byte)indexes[col];
+            }
+            return;
+        }
+        int per_byte = 8 / bit_depth;
+        Arrays.fill(row, 0, (width + per_byte - 1) / per_byte, (byte)0);
+        for (int col = 0; col < width; col++){
+            row[col / per_byte] |= indexes[col] << (8 - bit_depth * (col % per_byte + 1));
+        }
+    }
+
+    private static void toBytes(int[] argb, int width, boolean alpha, byte[] row){
+        int b = 0;
+        for (int col = 0; col < width; col++){
+            int pixel = argb[col];
+            row[b++] = (byte)(pixel >> 16);
+            row[b++] = (byte)(pixel >> 8);
+            row[b++] = (byte)pixel;
+            if (alpha){
+                row[b++] = (byte)(pixel >>> 24);
+            }
+        }
+    }
+
+    /**
+     * Filters one row, or tries every filter and keeps the smallest for ADAPTIVE.
+     * @return filtered byte[], the filter type followed by the filtered row, in one of the buffers.
+     */
+    private static byte[] filterRow(int filter, byte[] current, byte[] previous, int row_bytes, int pixel_bytes, Rows buffers){
+        if (filter != ADAPTIVE){
+            applyFilter(filter, current, previous, row_bytes, pixel_bytes, buffers.filtered[0]);
+            return buffers.filtered[0];
+        }
+        int best = 0;
+        long best_sum = Long.MAX_VALUE;
+        for (int candidate : ADAPTIVE_ORDER){
+            byte[] filtered = buffers.filtered[candidate];
+            applyFilter(candidate, current, previous, row_bytes, pixel_bytes, filtered);
+            long sum = 0;
+            for (int i = 1; i <= row_bytes; i++){
+                sum += Math.abs(filtered[i]);
+            }
+            if (sum < best_sum){
+                best_sum = sum;
+                best = candidate;
+            }
+            if (best_sum == 0){
+                break;
+            }
+        }
+        return buffers.filtered[best];
+    }
+
+    //each filter has its own loop so the choice isn't made again for every byte.
+    private static void applyFilter(int filter, byte[] current, byte[] previous, int row_bytes, int pixel_bytes, byte[] filtered){
+        filtered[0] = (byte)filter;
+        if (filter == 0){
+            System.arraycopy(current, 0, filtered, 1, row_bytes);
+        } else if (filter == 1){
+            for (int i = 0; i < row_bytes; i++){
+                int left = i >= pixel_bytes ? current[i - pixel_bytes] : 0;
+                filtered[i + 1] = (byte)(current[i] - left);
+            }
+        } else if (filter == 2){
+            for (int i = 0; i < row_bytes; i++){
+                filtered[i + 1] = (byte)(current[i] - previous[i]);
+            }
+        } else if (filter == 3){
+            for (int i = 0; i < row_bytes; i++){
+                int left = i >= pixel_bytes ? current[i - pixel_bytes] & 0xFF : 0;
+                filtered[i + 1] = (byte)(current[i] - ((left + (previous[i] & 0xFF)) >>> 1));
+            }
+        } else {
+            for (int i = 0; i < row_bytes; i++){
+                int left = i >= pixel_bytes ? current[i - pixel_bytes] & 0xFF : 0;
+                int upper_left = i >= pixel_bytes ? previous[i - pixel_bytes] & 0xFF : 0;
+                filtered[i + 1] = (byte)(current[i] - paeth(left, previous[i] & 0xFF, upper_left));
+            }
+        }
+    }
+
+    private static int paeth(int left, int up, int upper_left){
+        int estimate = left + up - upper_left;
+        int to_left = Math.abs(estimate - left);
+        int to_up = Math.abs(estimate - up);
+        int to_upper_left = Math.abs(estimate - upper_left);
+        if (to_left <= to_up && to_left <= to_upper_left){
+            return left;
+        } else if (to_up <= to_upper_left){
+            return up;
+        }
+        return upper_left;
+    }
+
+    //one thread's row buffers, grown to the widest image it has saved.
+    private static final class Rows{
+        int[] pixels = new int[0];
+        byte[] current = new byte[0];
+        byte[] previous = new byte[0];
+        byte[][] filtered = new byte[FILTERS.length][0];
+
+        void ensure(int width, int row_bytes){
+            if (pixels.length < width){
+                pixels = new int[width];
+            }
+            if (current.length < row_bytes){
+                current = new byte[row_bytes];
+                previous = new byte[row_bytes];
+                for (int i = 0; i < filtered.length; i++){
+                    filtered[i] = new byte[row_bytes + 1];
+                }
+            }
+        }
+    }
+
+    //a chunk's data, written out with its length, type and CRC once it's complete.
+    private static final class ChunkBuilder{
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream data = new DataOutputStream(bytes);
+
+        void writeTo(DataOutputStream out, String type) throws IOException{
+            writeChunk(out, type, bytes.toByteArray(), bytes.size());
+        }
+    }
+
+    private static void writeChunk(DataOutputStream out, String type, byte[] data, int length) throws IOException{
+        byte[] type_bytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(type_bytes);
+        crc.update(data, 0, length);
+        out.writeInt(length);
+        out.write(type_bytes);
+        out.write(data, 0, length);
+        out.writeInt((int)crc.getValue());
+    }
+
+    //takes the compressed data and writes it out as IDAT chunks of up to CHUNK_SIZE bytes.
+    private static final class IdatStream extends OutputStream{
+        private final DataOutputStream out;
+        private final byte[] chunk = new byte[CHUNK_SIZE];
+        private int used = 0;
+
+        IdatStream(DataOutputStream out){
+            this.out = out;
+        }
+
+        public void write(int b) throws IOException{
+            if (used == CHUNK_SIZE){
+                flushChunk();
+            }
+            chunk[used++] = (byte)b;
+        }
+
+        public void write(byte[] b, int offset, int length) throws IOException{
+            while (length > 0){
+                if (used == CHUNK_SIZE){
+                    flushChunk();
+                }
+                int copied = Math.min(length, CHUNK_SIZE - used);
+                System.arraycopy(b, offset, chunk, used, copied);
+                used += copied;
+                offset += copied;
+                length -= copied;
+            }
+        }
+
+        void flushChunk() throws IOException{
+            if (used > 0){
+                writeChunk(out, "IDAT", chunk, used);
+                used = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Saves images in the Quite OK Image format, see qoiformat.org, a lossless format made to be quick to write and read. Every pixel is one of a
+ * run of the pixel before it, a reference to one of the last 64 colors seen, a small difference from the pixel before it, or the color itself.
+ * Pixelized images are mostly runs and repeated palette colors, so they come out not much bigger than PNGs, many times quicker.
+ * <br>
+ * The file is named with ".qoi" in place of the format the file name asked for. ImageIO can't read QOI, so it's meant for images that are
+ * handed on to something that can, rather than ones that are looked at. A recorded scale goes in a sidecar, see ScaleMetadata.
+ * Images with alpha are saved with 4 channels, the rest with 3.
+ * <br>
+ * This file has no testing functionality. Running it from the terminal will do nothing.
+ */
+
+import java.awt.image.RenderedImage;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+public class QoiEncoder implements ImageEncoder{
+    private static final int OP_INDEX = 0x00;
+    private static final int OP_DIFF = 0x40;
+    private static final int OP_LUMA = 0x80;
+    private static final int OP_RUN = 0xC0;
+    private static final int OP_RGB = 0xFE;
+    private static final int OP_RGBA = 0xFF;
+    //the longest run one byte holds.
+    private static final int MAX_RUN = 62;
+    private static final byte[] END = {0, 0, 0, 0, 0, 0, 0, 1};
+
+    //each thread's row of pixels, grown to the widest image it has saved.
+    private final ThreadLocal<int[]> rows = ThreadLocal.withInitial(() -> new int[0]);
+
+    public String extension(String format){
+        return "qoi";
+    }
+
+    public boolean write(RenderedImage image, String format, File file, int scale) throws IOException{
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean alpha = image.getColorModel().hasAlpha();
+        int[] argb = rows.get();
+        if (argb.length < width){
+            argb = new int[width];
+            rows.set(argb);
+        }
+
+        try (DataOutputStream out = new DataOutputStream(ImageIOEncoder.openBuffered(file))){
+            out.writeBytes("qoif");
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeByte(alpha ? 4 : 3);
+            //sRGB with linear alpha.
+            out.writeByte(0);
+
+            int[] seen = new int[64];
+            int previous = 0xFF000000;
+            int run = 0;
+            for (int row = 0; row < height; row++){
+                ImageEncoder.argbRow(image, row, argb);
+                for (int col = 0; col < width; col++){
+                    int pixel = alpha ? argb[col] : argb[col] | 0xFF000000;
+                    if (pixel == previous){
+                        run++;
+                        if (run == MAX_RUN){
+                            out.writeByte(OP_RUN | (run - 1));
+                            run = 0;
+                        }
+                        continue;
+                    }
+                    if (run > 0){
+                        out.writeByte(OP_RUN | (run - 1));
+                        run = 0;
+                    }
+
+                    int red = (pixel >> 16) & 0xFF;
+                    int green = (pixel >> 8) & 0xFF;
+                    int blue = pixel & 0xFF;
+                    int pixel_alpha = pixel >>> 24;
+                    int slot = (red * 3 + green * 5 + blue * 7 + pixel_alpha * 11) % 64;
+                    if (seen[slot] == pixel){
+                        out.writeByte(OP_INDEX | slot);
+                    } else {
+                        seen[slot] = pixel;
+                        if (pixel_alpha == previous >>> 24){
+                            //the differences wrap around, so they're worked out as signed bytes.
+                            int red_change = (byte)(red - ((previous >> 16) & 0xFF));
+                            int green_change = (byte)(green - ((previous >> 8) & 0xFF));
+                            int blue_change = (byte)(blue - (previous & 0xFF));
+                            int red_from_green = red_change - green_change;
+                            int blue_from_green = blue_change - green_change;
+                            if (red_change >= -2 && red_change <= 1 && green_change >= -2 && green_change <= 1 && blue_change >= -2 && blue_change <= 1){
+                                out.writeByte(OP_DIFF | ((red_change + 2) << 4) | ((green_change + 2) << 2) | (blue_change + 2));
+                            } else if (green_change >= -32 && green_change <= 31 && red_from_green >= -8 && red_from_green <= 7
+                                    && blue_from_green >= -8 && blue_from_green <= 7){
+                                out.writeByte(OP_LUMA | (green_change + 32));
+                                out.writeByte(((red_from_green + 8) << 4) | (blue_from_green + 8));
+                            } else {
+                                out.writeByte(OP_RGB);
+                                out.writeByte(red);
+                                out.writeByte(green);
+                                out.writeByte(blue);
+                            }
+                        } else {
+                            out.writeByte(OP_RGBA);
+                            out.writeByte(red);
+                            out.writeByte(green);
+                            out.writeByte(blue);
+                            out.writeByte(pixel_alpha);
+                        }
+                    }
+                    previous = pixel;
+                }
+            }
+            if (run > 0){
+                out.writeByte(OP_RUN | (run - 1));
+            }
+            out.write(END);
+        }
+        if (scale > 0){
+            ScaleMetadata.writeSidecar(file, scale);
+        } else {
+            ScaleMetadata.removeSidecar(file);
+        }
+        return true;
+    }
+}
@@ -1,5 +1,5 @@
 /**
- * Passes in an image and reduces it's palette to the palette contained in the file palette.csv.
+ * Passes in an image and reduces it's palette to the palette contained in the file palette.csv, or the palette from saved palettes.txt named by the palette option.
  * This can be run from the terminal for testing purposes.
  * <br>
  * Compilation:  javac ReducePalette.java <br>
@@ -17,103 +17,86 @@ import java.awt.image.*;
 import javax.imageio.*;
 import java.io.File;
 import java.io.IOException;
-import java.io.BufferedReader;
-import java.io.FileReader;
 import static java.lang.Math.abs;
 
 
 public class ReducePalette extends ImageEditParent {
-    protected Color[] color_palette;
+    protected Palette palette;
+    protected ColorSearch color_search;
+    protected int[] palette_argb;
+    protected PixelizeOptions options;
+    protected int parallelism = 1;
     protected BufferedImage original_image;
     protected Color transparent = new Color(0, 0, 0, 0);
     protected int transARGB = transparent.getRGB();
 
 
     /**
-     * The constructor of the ReducePalette object. Runs the paletteToStrings function with the desired parameters, and then the stringsToColor function, and finally the ScoreImage function, with the color palette which was read with the last two functions.
+     * The constructor of the ReducePalette object. Loads the palette, builds the color search, and finally runs the ScoreImage function with that palette.
      * @param original BufferedImage, the original image that this object edits.
      */
     public ReducePalette(BufferedImage original, boolean do_not_visualize){
+        this(original, do_not_visualize, new PixelizeOptions());
+    }
+
+    /**
+     * The constructor of the ReducePalette object with a set of options, which pick the type of color search.
+     * @param original BufferedImage, the original image that this object edits.
+     * @param options PixelizeOptions, the optional settings for this run.
+     */
+    public ReducePalette(BufferedImage original, boolean do_not_visualize, PixelizeOptions options){
+        this(original, do_not_visualize, Palette.fromOptions(options), options);
+    }
+
+    /**
+     * The constructor of the ReducePalette object with a palette that has already been loaded.
+     * @param original BufferedImage, the original image that this object edits.
+     * @param palette Palette, the palette the image is reduced to.
+     * @param options PixelizeOptions, the optional settings for this run.
+     */
+    public ReducePalette(BufferedImage original, boolean do_not_visualize, Palette palette, PixelizeOptions options){
+        this(palette, options);
         original_image = original;
         //original_image = convertType(original_image);
-        String[][] string_palette = paletteToStrings();
-        color_palette = stringsToColor(string_palette);
 
 
         final_image = scoreImage();
 
         if (!do_not_visualize){
-            displayImage(final_image, "ReducedImage");
+            ImageViewer.displayImage(final_image, "ReducedImage");
         }
     }
 
 
-    protected BufferedImage convertType(BufferedImage original){
-        BufferedImage convertedImg = new BufferedImage(original.getWidth(), original.getHeight(), BufferedImage.TYPE_4BYTE_ABGR);
-        convertedImg.getGraphics().drawImage(original, 0, 0, null);
-        return convertedImg;
-    }
     /**
-     * Turns the string values from the CSV file into an array of colors.
-     * @param string_palette String[][], the strings passed in which will turn into colors.
-     * @return reconstructed_palette Color[], the colors
+     * Loads the palette and builds the color search without filtering an image.
+     * FusedPixelize uses a ReducePalette made this way to pick the color of one pixel at a time with pickColor.
+     * @param options PixelizeOptions, the optional settings for this run.
      */
-    protected Color[] stringsToColor(String[][] string_palette){
-        Color[] reconstructed_palette = new Color[string_palette.length];
-        int current_red, current_green, current_blue;
-        for(int i = 0; i < string_palette.length; i++){
-            current_red = Integer.parseInt(string_palette[i][0]);
-            current_green = Integer.parseInt(string_palette[i][1]);
-            current_blue = Integer.parseInt(string_palette[i][2]);
-
-            reconstructed_palette[i] = new Color(current_red, current_green, current_blue);
-
-        }
-        return(reconstructed_palette);
-
+    public ReducePalette(PixelizeOptions options){
+        this(Palette.fromOptions(options), options);
     }
 
     /**
-     * Turns the palette.csv file into a String[][] representing each of the colors.
-     * @return The String[][] that the palette is turned into.
+     * Builds the color search for a palette that has already been loaded, without filtering an image.
+     * The search is kept by the palette, so every reducer using the same palette shares it.
+     * @param palette Palette, the palette colors are picked from.
+     * @param options PixelizeOptions, the optional settings for this run.
      */
-    protected String[][] paletteToStrings(){
-        // gets the number of lines for string_palette_values.
-        int line_num_init = 0;
-        String line_init;
-        try (BufferedReader bb = new BufferedReader(new FileReader("palette.csv"))) {
-            while ((line_init = bb.readLine()) != null) {
-                line_num_init += 1;
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        //figure out how to convert this to arraylist.
-        String[][] string_palette_values = new String[line_num_init][3];
-        //code taken and heavily modified from https://stackoverflow.com/questions/59317619/how-can-i-convert-csv-file-into-an-integer-array-in-java
-        try (BufferedReader br = new BufferedReader(new FileReader("palette.csv"))) {
-            String line;
-            int line_num = 0;
-            while ((line = br.readLine()) != null) {
-                //gets rid of the \n at the end.
-                String[] values = line.split("\n");
-                //chops the values up by comma.
-                String[] value_separated = values[0].split(",");
-                //inserts each
-                for(int i = 0; i < value_separated.length; i++) {
-                    string_palette_values[line_num][i] = value_separated[i];
-                    //System.out.println("this is done " + line_num + " times");
-                }
-                line_num += 1;
-            }
-
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        //end of borrow.
-        return string_palette_values;
+    public ReducePalette(Palette palette, PixelizeOptions options){
+        this.palette = palette;
+        color_search = palette.search(options.search_type, options.metric);
+        this.options = options;
+        parallelism = options.threads;
+        palette_argb = palette.argbArray();
     }
 
+
+    protected BufferedImage convertType(BufferedImage original){
+        BufferedImage convertedImg = new BufferedImage(original.getWidth(), original.getHeight(), BufferedImage.TYPE_4BYTE_ABGR);
+        convertedImg.getGraphics().drawImage(original, 0, 0, null);
+        return convertedImg;
+    }
     /**
      * Returns the int index of the highest scoring color in the color palette.
      * @param scores double[], The list of scores based on how similar each color is to it.
@@ -131,67 +114,57 @@ public class ReducePalette extends ImageEditParent {
     }
 
     /**
-     * Gets a score based on how similar each pixel of the image is to the color palette and produces an image based on the highest scoring colors of that
-     * @return duplicate BufferedImage, The image after the palette has been reduced.
+     * The sum of the channel differences between a color and a palette color. The score that scoreImage always used is 765 minus this.
+     * @param rgb int, the color being compared.
+     * @param index int, the index of the palette color.
+     * @return distance int, the distance between the two colors.
      */
-    protected BufferedImage scoreImage(){
-        //Color[][] color_grid = new Color[original_image.getHeight()][original_image.getWidth()];
-        BufferedImage duplicate = new BufferedImage(original_image.getWidth(), original_image.getHeight(), original_image.getType());
-        int rgb, current_red, current_green, current_blue;
-        for (int row=0; row<original_image.getHeight(); row++) {
-            for (int col = 0; col < original_image.getWidth(); col++) {
-                //gets each color in the current pixel
-                rgb = original_image.getRGB(col, row);
-                Color colorIn = new Color(rgb, true);
-                current_red = colorIn.getRed();
-                current_green = colorIn.getGreen();
-                current_blue = colorIn.getBlue();
-
-                double[] scores = new double[color_palette.length];
-
-                //actually does the scoring.
-                for(int i = 0; i < color_palette.length; i++ ){
-                    double score;
-                    double red_score;
-                    double green_score;
-                    double blue_score;
-
-                    red_score = 255 - abs(color_palette[i].getRed() - current_red);
-                    green_score = 255 - abs(color_palette[i].getGreen() - current_green);
-                    blue_score = 255 - abs(color_palette[i].getBlue() - current_blue);
-
-                    score = red_score + green_score + blue_score;
-
-                    scores[i] = score;
-
-                }
-
-                int highest_color = findHighest(scores);
-
-
-                if (colorIn.getAlpha() > 127) {
-                    duplicate.setRGB(col, row, color_palette[highest_color].getRGB());
-                }
-                else
-                {
-                    duplicate.setRGB(col, row, transARGB);
-                }
-            }
-        }
-        return duplicate;
+    protected int colorDistance(int rgb, int index){
+        return abs(palette.red(index) - ((rgb >> 16) & 0xFF))
+                + abs(palette.green(index) - ((rgb >> 8) & 0xFF))
+                + abs(palette.blue(index) - (rgb & 0xFF));
     }
 
+    /**
+     * Picks which palette color a pixel turns into. This is the closest color by score, which the color search gives without scoring every color.
+     * @param rgb int, the color of the pixel.
+     * @param row int, the row of the pixel.
+     * @param col int, the column of the pixel.
+     * @return index int, the index of the chosen color in the color palette.
+     */
+    protected int pickColor(int rgb, int row, int col){
+        return color_search.nearest(rgb);
+    }
 
     /**
-     * Prints out the String palette to make sure it's working.
-     * @param string_palette String[][], The current palette constructed of strings.
+     * Gets a score based on how similar each pixel of the image is to the color palette and produces an image based on the highest scoring colors of that
+     * @return duplicate BufferedImage, The image after the palette has been reduced.
      */
-    protected void testColors(String[][] string_palette){
-        for(int i = 0; i < string_palette.length; i++) {
-            for(int b = 0; b < string_palette[i].length; b++){
-                System.out.println(string_palette[i][b]);
+    protected BufferedImage scoreImage(){
+        int width = original_image.getWidth();
+        int height = original_image.getHeight();
+        int[] pixels = readPixels(original_image);
+        int[] duplicate = new int[width * height];
+
+        RowBands.run(height, parallelism, (first_row, end_row) -> {
+            int rgb;
+            for (int row=first_row; row<end_row; row++) {
+                int offset = row * width;
+                for (int col = 0; col < width; col++) {
+                    rgb = pixels[offset + col];
+
+                    //the alpha check comes first so transparent pixels never need a color picked.
+                    if ((rgb >>> 24) > 127) {
+                        duplicate[offset + col] = palette_argb[pickColor(rgb, row, col)];
+                    }
+                    else
+                    {
+                        duplicate[offset + col] = transARGB;
+                    }
+                }
             }
-        }
+        });
+        return writePixels(duplicate, width, height, original_image.getType());
     }
 
     /**
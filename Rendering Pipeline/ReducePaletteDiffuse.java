@@ -0,0 +1,360 @@
+/**
+ * Passes in an image and reduces it's palette like ReducePalette, spreading the difference between each pixel and its palette color onto the pixels
+ * that haven't been picked yet, so areas between two palette colors come out as a mix of both.
+ * This can be run from the terminal for testing purposes.
+ * <br>
+ * The kernels, picked by name:
+ *             "floyd-steinberg" = 7/16 to the right, 3/16, 5/16 and 1/16 to the row below.
+ *             "atkinson" = 1/8 each to two pixels on the right, three below and one two rows below. Only 3/4 of the error is passed on.
+ *             "sierra-lite" = 2/4 to the right, 1/4 each below left and below.
+ * <br>
+ * The error waiting to be added is kept in a few rows of ints, one for each row the kernel reaches plus the row being picked,
+ * so the memory used only depends on the width of the image. The rows are scanned left to right and right to left in turn unless serpentine is off.
+ * Every row needs the error from the row above, so a serpentine scan runs on one thread. With serpentine off every row goes left to right and
+ * the rows run on several threads as a wavefront, each row staying a couple of pixels behind the one above it.
+ * The wavefront gives the same image as scanning the rows one after another, with any number of threads.
+ * <br>
+ * Compilation:  javac ReducePaletteDiffuse.java <br>
+ * Execution:    java ReducePaletteDiffuse fileName String, kernel String  <br>
+ * <br>
+ * Commandline arguments:
+ *             args[0] fileName String, the name of the file that's being filtered.
+ *             args[1] kernel String, the name of the kernel, defaults to floyd-steinberg.
+ */
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class ReducePaletteDiffuse extends ReducePalette{
+    public static final Kernel FLOYD_STEINBERG = new Kernel("floyd-steinberg", 16, new int[][]{{1, 0, 7}, {-1, 1, 3}, {0, 1, 5}, {1, 1, 1}});
+    public static final Kernel ATKINSON = new Kernel("atkinson", 8, new int[][]{{1, 0, 1}, {2, 0, 1}, {-1, 1, 1}, {0, 1, 1}, {1, 1, 1}, {0, 2, 1}});
+    public static final Kernel SIERRA_LITE = new Kernel("sierra-lite", 4, new int[][]{{1, 0, 2}, {-1, 1, 1}, {0, 1, 1}});
+
+    //the error rows have this many empty pixels on each side, so the kernel can reach past the edge without checking. Whatever lands there is dropped.
+    private static final int PAD = 2;
+    //how many pixels a row gets through in the wavefront before telling the row below how far it has got.
+    private static final int PUBLISH_EVERY = 32;
+
+    protected Kernel kernel;
+
+    /**
+     * This is the constructor for ReducePaletteDiffuse. Loads the palette named in the options and diffuses the image with the kernel.
+     * @param original BufferedImage, the original image that this object edits.
+     * @param kernel Kernel, how the error is spread.
+     * @param options PixelizeOptions, the optional settings for this run.
+     */
+    public ReducePaletteDiffuse(BufferedImage original, boolean do_not_visualize, Kernel kernel, PixelizeOptions options){
+        this(original, do_not_visualize, Palette.fromOptions(options), kernel, options);
+    }
+
+    /**
+     * This is the constructor for ReducePaletteDiffuse with a palette that has already been loaded.
+     * The kernel has to be set before the image is scored, so this filters the image itself instead of using the parent's filtering constructor.
+     * @param original BufferedImage, the original image that this object edits.
+     * @param palette Palette, the palette the image is reduced to.
+     * @param kernel Kernel, how the error is spread.
+     * @param options PixelizeOptions, the optional settings for this run.
+     */
+    public ReducePaletteDiffuse(BufferedImage original, boolean do_not_visualize, Palette palette, Kernel kernel, PixelizeOptions options){
+        super(palette, options);
+        this.kernel = kernel;
+        original_image = original;
+
+        final_image = scoreImage();
+
+        if (!do_not_visualize){
+            ImageViewer.displayImage(final_image, "ReducedImage");
+        }
+    }
+
+    /**
+     * Finds the kernel for a filter type.
+     * @param filterType String, the filter type, which is the name of the kernel.
+     * @return kernel Kernel, the kernel with that name, or null if the filter type isn't error diffusion.
+     */
+    public static Kernel kernel(String filterType){
+        for (Kernel kernel : new Kernel[]{FLOYD_STEINBERG, ATKINSON, SIERRA_LITE}){
+            if (kernel.name.equals(filterType)){
+                return kernel;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Picks the palette color for every pixel with the error from the pixels before it added on, and produces an image from those colors.
+     * @return duplicate BufferedImage, The image after the palette has been reduced.
+     */
+    protected BufferedImage scoreImage(){
+        int width = original_image.getWidth();
+        int height = original_image.getHeight();
+        int[] pixels = readPixels(original_image);
+        int[] duplicate = new int[width * height];
+
+        if (options.serpentine || parallelism <= 1 || height < 2){
+            diffuseInOrder(pixels, duplicate, width, height);
+        } else {
+            diffuseWavefront(pixels, duplicate, width, height);
+        }
+        return writePixels(duplicate, width, height, original_image.getType());
+    }
+
+    /**
+     * Diffuses every row one after another on the current thread, with a ring of one error row per row the kernel reaches plus the row being picked.
+     */
+    private void diffuseInOrder(int[] pixels, int[] duplicate, int width, int height){
+        int[][] ring = new int[kernel.depth + 1][3 * (width + 2 * PAD)];
+        int[][] below = new int[kernel.depth][];
+        int[] ahead = new int[3 * (width + 2 * PAD)];
+        for (int row = 0; row < height; row++){
+            //the ring slot for the furthest row the kernel reaches was the last row's, which is finished with.
+            Arrays.fill(ring[(row + kernel.depth) % ring.length], 0);
+            for (int dy = 1; dy <= kernel.depth; dy++){
+                below[dy - 1] = ring[(row + dy) % ring.length];
+            }
+            boolean reverse = options.serpentine && row % 2 == 1;
+            diffuseRow(pixels, duplicate, width, row, reverse, ring[row % ring.length], below, ahead, null);
+        }
+    }
+
+    /**
+     * Diffuses the rows on several threads. Each thread takes the next row that nobody has started, and only picks a pixel once the row above has
+     * got far enough past it that no more error can arrive for it. Rows always finish in order, so with one thread per row in flight
+     * a ring of threads plus kernel.depth error rows is enough for every row in flight and the rows they pass error on to.
+     */
+    private void diffuseWavefront(int[] pixels, int[] duplicate, int width, int height){
+        int threads = Math.min(parallelism, height);
+        Wavefront wave = new Wavefront(height, kernel.lag(), width);
+        int[][] ring = new int[threads + kernel.depth][3 * (width + 2 * PAD)];
+        AtomicInteger next_row = new AtomicInteger();
+
+        List<Callable<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++){
+            workers.add(() -> {
+                int[][] below = new int[kernel.depth][];
+                int[] ahead = new int[3 * (width + 2 * PAD)];
+                try {
+                    for (int row = next_row.getAndIncrement(); row < height; row = next_row.getAndIncrement()){
+                        //the slot was last used by a row at least threads rows back, which has finished, and only this row and the ones after it write to it.
+                        Arrays.fill(ring[(row + kernel.depth) % ring.length], 0);
+                        for (int dy = 1; dy <= kernel.depth; dy++){
+                            below[dy - 1] = ring[(row + dy) % ring.length];
+                        }
+                        diffuseRow(pixels, duplicate, width, row, false, ring[row % ring.length], below, ahead, wave);
+                    }
+                } catch (RuntimeException | Error e) {
+                    //the rows below would wait forever for this one, so they're told to stop.
+                    wave.failed = true;
+                    throw e;
+                }
+                return null;
+            });
+        }
+
+        List<Future<Void>> results = RowBands.pool(threads).invokeAll(workers);
+        //every worker is waited on, and the failure that started it is thrown rather than a row below that was only told to stop.
+        Throwable failure = null;
+        for (Future<Void> result : results){
+            try {
+                result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while diffusing", e);
+            } catch (ExecutionException e) {
+                if (failure == null || (failure instanceof AboveFailed && !(e.getCause() instanceof AboveFailed))){
+                    failure = e.getCause();
+                }
+            }
+        }
+        if (failure instanceof RuntimeException){
+            throw (RuntimeException) failure;
+        } else if (failure != null){
+            throw new IllegalStateException(failure);
+        }
+    }
+
+    /**
+     * Picks the colors of one row, adding on the error that has reached each pixel and passing its own error on.
+     * The errors are kept as numerators over the kernel's divisor, three ints per pixel in red, green, blue order.
+     * @param row int, the row being picked.
+     * @param reverse boolean, whether the row is scanned right to left, which mirrors the kernel.
+     * @param errors int[], the error the rows above have passed on to this row.
+     * @param below int[][], the error rows for the rows below, one per row the kernel reaches. Their slots must have been cleared.
+     * @param ahead int[], the error this row passes on to itself. Only this row uses it, so rows in the wavefront don't race on it.
+     * @param wave Wavefront, what tells this row how far the row above has got, or null if the row above has already finished.
+     */
+    private void diffuseRow(int[] pixels, int[] duplicate, int width, int row, boolean reverse, int[] errors, int[][] below, int[] ahead, Wavefront wave){
+        Arrays.fill(ahead, 0);
+        int offset = row * width;
+        int divisor = kernel.divisor;
+        int done_above = 0;
+
+        for (int i = 0; i < width; i++){
+            int col = reverse ? width - 1 - i : i;
+            if (wave != null && row > 0){
+                done_above = wave.awaitAbove(row, i, done_above);
+            }
+
+            int rgb = pixels[offset + col];
+            //transparent pixels don't take any error or pass any on.
+            if ((rgb >>> 24) <= 127){
+                duplicate[offset + col] = transARGB;
+            } else {
+                int e = 3 * (col + PAD);
+                int red = clamp(((rgb >> 16) & 0xFF) + (errors[e] + ahead[e]) / divisor);
+                int green = clamp(((rgb >> 8) & 0xFF) + (errors[e + 1] + ahead[e + 1]) / divisor);
+                int blue = clamp((rgb & 0xFF) + (errors[e + 2] + ahead[e + 2]) / divisor);
+
+                int chosen = pickColor((rgb & 0xFF000000) | (red << 16) | (green << 8) | blue, row, col);
+                duplicate[offset + col] = palette_argb[chosen];
+
+                int error_red = red - palette.red(chosen);
+                int error_green = green - palette.green(chosen);
+                int error_blue = blue - palette.blue(chosen);
+                for (int tap = 0; tap < kernel.weight.length; tap++){
+                    int[] target = kernel.dy[tap] == 0 ? ahead : below[kernel.dy[tap] - 1];
+                    int t = e + 3 * (reverse ? -kernel.dx[tap] : kernel.dx[tap]);
+                    int weight = kernel.weight[tap];
+                    target[t] += error_red * weight;
+                    target[t + 1] += error_green * weight;
+                    target[t + 2] += error_blue * weight;
+                }
+            }
+
+            if (wave != null && (i + 1) % PUBLISH_EVERY == 0){
+                wave.publish(row, i + 1);
+            }
+        }
+        if (wave != null){
+            wave.publish(row, width);
+        }
+    }
+
+    private static int clamp(int value){
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+
+    /**
+     * An error diffusion kernel, the pixels the error of a pixel is passed on to, relative to it in the direction of the scan, and how much each gets.
+     */
+    public static final class Kernel{
+        final String name;
+        final int divisor;
+        final int[] dx;
+        final int[] dy;
+        final int[] weight;
+        //how many rows below the kernel reaches.
+        final int depth;
+
+        /**
+         * @param name String, the name the kernel is picked by.
+         * @param divisor int, what every weight is divided by.
+         * @param taps int[][], one {dx, dy, weight} for every pixel the error is passed on to. Taps on the same row must be to the right.
+         */
+        Kernel(String name, int divisor, int[][] taps){
+            this.name = name;
+            this.divisor = divisor;
+            dx = new int[taps.length];
+            dy = new int[taps.length];
+            weight = new int[taps.length];
+            int deepest = 0;
+            for (int i = 0; i < taps.length; i++){
+                dx[i] = taps[i][0];
+                dy[i] = taps[i][1];
+                weight[i] = taps[i][2];
+                deepest = Math.max(deepest, dy[i]);
+            }
+            depth = deepest;
+        }
+
+        public String name(){ return name; }
+
+        /**
+         * How many pixels the row above has to have finished past a pixel before that pixel can be picked. It's one more than the width the kernel
+         * covers on the rows below, which keeps the row above past every pixel that can still pass error to this one, and keeps the two rows
+         * from adding to the same place in an error row at once. Rows further up are covered, since the row in between waits for them too.
+         */
+        int lag(){
+            int left = 0;
+            int right = 0;
+            for (int i = 0; i < dx.length; i++){
+                if (dy[i] > 0){
+                    left = Math.min(left, dx[i]);
+                    right = Math.max(right, dx[i]);
+                }
+            }
+            return right - left + 1;
+        }
+    }
+
+    /**
+     * Thrown by a row that stops because a row above it failed, so the failure that started it can be told apart.
+     */
+    private static final class AboveFailed extends IllegalStateException{
+        private static final long serialVersionUID = 1L;
+
+        AboveFailed(){
+            super("A row above failed to diffuse");
+        }
+    }
+
+    /**
+     * How far each row of the wavefront has got. A row publishes how many of its pixels are finished, and the row below waits on that before
+     * it picks a pixel. Publishing is a volatile write, so the error written before it is seen by the row below.
+     */
+    private static final class Wavefront{
+        private final AtomicIntegerArray progress;
+        private final int lag;
+        private final int width;
+        volatile boolean failed = false;
+
+        Wavefront(int height, int lag, int width){
+            progress = new AtomicIntegerArray(height);
+            this.lag = lag;
+            this.width = width;
+        }
+
+        void publish(int row, int done){
+            progress.set(row, done);
+        }
+
+        /**
+         * Waits until the row above has finished enough pixels for col to be picked.
+         * @param done_above int, how far the row above was last seen to have got, so it's only read again when it needs to be.
+         * @return done_above int, how far the row above has got now.
+         */
+        int awaitAbove(int row, int col, int done_above){
+            int needed = Math.min(col + lag, width);
+            while (done_above < needed){
+                if (failed){
+                    throw new AboveFailed();
+                }
+                Thread.onSpinWait();
+                done_above = progress.get(row - 1);
+            }
+            return done_above;
+        }
+    }
+
+    /**
+     * Passes in the commandline arguments and runs ReducePaletteDiffuse, this is only for testing.
+     * @param args String[], The arguments passed in from the commandline.
+     *             Args[0], The image file name.
+     *             Args[1], The kernel name.
+     */
+    public static void main(String[] args) {
+        Kernel kernel = args.length > 1 ? kernel(args[1]) : FLOYD_STEINBERG;
+        if (kernel == null){
+            System.err.println("Unknown kernel: " + args[1]);
+            return;
+        }
+        ReducePalette m = new ReducePaletteDiffuse(read_in_file(args[0]), false, kernel, new PixelizeOptions());
+    }
+}
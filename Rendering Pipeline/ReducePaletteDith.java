@@ -13,7 +13,6 @@
  */
 
 
-import java.awt.*;
 import java.awt.image.BufferedImage;
 import static java.lang.Math.abs;
 
@@ -26,73 +25,56 @@ public class ReducePaletteDith extends ReducePalette{
         super(original, do_not_visualize);
     }
 
-
     /**
-     * Gets a score based on how similar each pixel of the image is to the color palette and produces an image based on the highest scoring colors of that
-     * @return duplicate BufferedImage, The image after the palette has been reduced.
+     * This is the constructor for ReducePaletteDith with a set of options. It runs the constructor from it's parent class.
+     * @param original BufferedImage, the original image that this object edits.
+     * @param options PixelizeOptions, the optional settings for this run.
      */
-    protected BufferedImage scoreImage(){
-        //Color[][] color_grid = new Color[original_image.getHeight()][original_image.getWidth()];
-        BufferedImage duplicate = new BufferedImage(original_image.getWidth(), original_image.getHeight(), original_image.getType());
-        int rgb, current_red, current_green, current_blue;
-        for (int row=0; row<original_image.getHeight(); row++) {
-            for (int col = 0; col < original_image.getWidth(); col++) {
-                //gets each color in the current pixel
-                rgb = original_image.getRGB(col, row);
-                Color colorIn = new Color(rgb, true);
-                current_red = colorIn.getRed();
-                current_green = colorIn.getGreen();
-                current_blue = colorIn.getBlue();
-
-                double[] scores = new double[color_palette.length];
-
-                //actually does the scoring.
-                for(int i = 0; i < color_palette.length; i++ ){
-                    double score;
-                    double red_score;
-                    double green_score;
-                    double blue_score;
-
-                    red_score = 255 - abs(color_palette[i].getRed() - current_red);
-                    green_score = 255 - abs(color_palette[i].getGreen() - current_green);
-                    blue_score = 255 - abs(color_palette[i].getBlue() - current_blue);
-
-                    score = red_score + green_score + blue_score;
-
-                    scores[i] = score;
+    public ReducePaletteDith(BufferedImage original, boolean do_not_visualize, PixelizeOptions options){
+        super(original, do_not_visualize, options);
+    }
 
-                }
+    /**
+     * This is the constructor for ReducePaletteDith with a palette that has already been loaded. It runs the constructor from it's parent class.
+     * @param original BufferedImage, the original image that this object edits.
+     * @param palette Palette, the palette the image is reduced to.
+     * @param options PixelizeOptions, the optional settings for this run.
+     */
+    public ReducePaletteDith(BufferedImage original, boolean do_not_visualize, Palette palette, PixelizeOptions options){
+        super(original, do_not_visualize, palette, options);
+    }
 
-                int highest_color = findHighest(scores, row, col);
+    /**
+     * This is the constructor for a ReducePaletteDith that only picks colors and doesn't filter an image, see the matching ReducePalette constructor.
+     * @param options PixelizeOptions, the optional settings for this run.
+     */
+    public ReducePaletteDith(PixelizeOptions options){
+        super(options);
+    }
 
-                if (colorIn.getAlpha() > 127) {
-                    duplicate.setRGB(col, row, color_palette[highest_color].getRGB());
-                }
-                else
-                {
-                    duplicate.setRGB(col, row, transARGB);
-                }
-            }
-        }
-        return duplicate;
+    /**
+     * This is the constructor for a ReducePaletteDith that only picks colors from a palette that has already been loaded.
+     * @param palette Palette, the palette colors are picked from.
+     * @param options PixelizeOptions, the optional settings for this run.
+     */
+    public ReducePaletteDith(Palette palette, PixelizeOptions options){
+        super(palette, options);
     }
+
     /**
      * Returns the int index of the highest scoring color in the color palette.
      * If the highest and second highest scoring colors are within 50 score of each other the second highest scoring color appears on every even pixel.
-     * @param scores double[], The list of scores based on how similar each color is to it.
+     * @param rgb int, the color of the pixel.
+     * @param row int, the row of the pixel.
+     * @param col int, the column of the pixel.
      * @return current_highest int, the int index of the highest scoring color in the color palette based on how similar it is to the base color.
      */
-    protected int findHighest(double[] scores, int row, int col){
-        int current_highest = 0;
-        int second_highest = 0;
-        for (int i = 1; i< scores.length; i++){
-            if (scores[i] > scores[current_highest]){
-                second_highest = current_highest;
-                current_highest = i;
-            }
-        }
+    protected int pickColor(int rgb, int row, int col){
+        int current_highest = color_search.nearest(rgb);
+        int second_highest = color_search.runnerUp(rgb, current_highest);
 
-        if (abs(scores[current_highest] - scores[second_highest]) < 50)
+        //the difference in score is the same as the difference in distance.
+        if (abs(colorDistance(rgb, second_highest) - colorDistance(rgb, current_highest)) < 50)
         {
             if ((row + col) % 2 == 0){
                 current_highest = second_highest;
@@ -0,0 +1,164 @@
+/**
+ * Passes in an image and reduces it's palette like ReducePalette, with ordered dithering from a Bayer matrix.
+ * Each pixel has an offset added to it from a threshold table that repeats across the image, then the closest palette color is picked,
+ * so areas between two palette colors come out as an even pattern of both. The table is worked out once, so each pixel only costs
+ * an add and a color search. Every pixel is picked on its own, so it runs on any number of threads and the pattern stays in the same place
+ * from one frame of an animation to the next.
+ * This can be run from the terminal for testing purposes.
+ * <br>
+ * The matrices, picked by filter type:
+ *             "bayer2" = a 2x2 matrix, 4 levels.
+ *             "bayer4" = a 4x4 matrix, 16 levels.
+ *             "bayer8" = an 8x8 matrix, 64 levels.
+ * How far the offsets go is set by the spread option.
+ * <br>
+ * Compilation:  javac ReducePaletteOrdered.java <br>
+ * Execution:    java ReducePaletteOrdered fileName String, filterType String  <br>
+ * <br>
+ * Commandline arguments:
+ *             args[0] fileName String, the name of the file that's being filtered.
+ *             args[1] filterType String, the matrix, defaults to bayer4.
+ */
+
+import java.awt.image.BufferedImage;
+
+public class ReducePaletteOrdered extends ReducePalette{
+    //the width of the matrix, always a power of two.
+    protected int size;
+    //the offset added to every channel of a pixel, by (row % size) * size + (col % size).
+    protected int[] thresholds;
+
+    /**
+     * This is the constructor for ReducePaletteOrdered. Loads the palette named in the options and dithers the image with a matrix of the size given.
+     * @param original BufferedImage, the original image that this object edits.
+     * @param size int, the width of the Bayer matrix, 2, 4 or 8.
+     * @param options PixelizeOptions, the optional settings for this run.
+     */
+    public ReducePaletteOrdered(BufferedImage original, boolean do_not_visualize, int size, PixelizeOptions options){
+        this(original, do_not_visualize, Palette.fromOptions(options), size, options);
+    }
+
+    /**
+     * This is the constructor for ReducePaletteOrdered with a palette that has already been loaded.
+     * The thresholds have to be worked out before the image is scored, so this filters the image itself instead of using the parent's filtering constructor.
+     * @param original BufferedImage, the original image that this object edits.
+     * @param palette Palette, the palette the image is reduced to.
+     * @param size int, the width of the Bayer matrix, 2, 4 or 8.
+     * @param options PixelizeOptions, the optional settings for this run.
+     */
+    public ReducePaletteOrdered(BufferedImage original, boolean do_not_visualize, Palette palette, int size, PixelizeOptions options){
+        this(palette, size, options);
+        original_image = original;
+
+        final_image = scoreImage();
+
+        if (!do_not_visualize){
+            ImageViewer.displayImage(final_image, "ReducedImage");
+        }
+    }
+
+    /**
+     * This is the constructor for a ReducePaletteOrdered that only picks colors from a palette that has already been loaded, see the matching ReducePalette constructor.
+     * @param palette Palette, the palette colors are picked from.
+     * @param size int, the width of the Bayer matrix, 2, 4 or 8.
+     * @param options PixelizeOptions, the optional settings for this run.
+     */
+    public ReducePaletteOrdered(Palette palette, int size, PixelizeOptions options){
+        super(palette, options);
+        this.size = size;
+        thresholds = thresholds(size, options.spread);
+    }
+
+    /**
+     * Finds the matrix size for a filter type.
+     * @param filterType String, the filter type.
+     * @return size int, the width of the matrix, or 0 if the filter type isn't ordered dithering.
+     */
+    public static int matrixSize(String filterType){
+        if (filterType.equals("bayer2")){
+            return 2;
+        } else if (filterType.equals("bayer4")){
+            return 4;
+        } else if (filterType.equals("bayer8")){
+            return 8;
+        }
+        return 0;
+    }
+
+    /**
+     * Builds a Bayer matrix, each one made from four copies of the one half its size.
+     * @param size int, the width of the matrix, a power of two.
+     * @return matrix int[], the matrix row by row, holding every number from 0 to size * size - 1 once.
+     */
+    static int[] bayer(int size){
+        int[] matrix = {0};
+        for (int width = 1; width < size; width *= 2){
+            int[] next = new int[4 * width * width];
+            for (int row = 0; row < width; row++){
+                for (int col = 0; col < width; col++){
+                    int value = 4 * matrix[row * width + col];
+                    next[row * 2 * width + col] = value;
+                    next[row * 2 * width + col + width] = value + 2;
+                    next[(row + width) * 2 * width + col] = value + 3;
+                    next[(row + width) * 2 * width + col + width] = value + 1;
+                }
+            }
+            matrix = next;
+        }
+        return matrix;
+    }
+
+    /**
+     * Turns a Bayer matrix into the offsets added to each pixel, spread evenly around 0 so the image doesn't get lighter or darker overall.
+     * @param size int, the width of the matrix, a power of two.
+     * @param spread int, the distance from the lowest offset to the highest.
+     * @return thresholds int[], the offsets row by row.
+     */
+    static int[] thresholds(int size, int spread){
+        if (size < 1 || Integer.bitCount(size) != 1){
+            throw new IllegalArgumentException("The Bayer matrix size must be a power of two: " + size);
+        }
+        int[] matrix = bayer(size);
+        int levels = size * size;
+        int[] thresholds = new int[levels];
+        for (int i = 0; i < levels; i++){
+            thresholds[i] = (int)Math.round(((matrix[i] + 0.5) / levels - 0.5) * spread);
+        }
+        return thresholds;
+    }
+
+    /**
+     * Returns the int index of the closest palette color to the pixel once the threshold for its position has been added to each channel.
+     * @param rgb int, the color of the pixel.
+     * @param row int, the row of the pixel.
+     * @param col int, the column of the pixel.
+     * @return index int, the index of the chosen color in the color palette.
+     */
+    protected int pickColor(int rgb, int row, int col){
+        int mask = size - 1;
+        int offset = thresholds[(row & mask) * size + (col & mask)];
+        int red = clamp(((rgb >> 16) & 0xFF) + offset);
+        int green = clamp(((rgb >> 8) & 0xFF) + offset);
+        int blue = clamp((rgb & 0xFF) + offset);
+        return color_search.nearest((rgb & 0xFF000000) | (red << 16) | (green << 8) | blue);
+    }
+
+    private static int clamp(int value){
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+
+    /**
+     * Passes in the commandline arguments and runs ReducePaletteOrdered, this is only for testing.
+     * @param args String[], The arguments passed in from the commandline.
+     *             Args[0], The image file name.
+     *             Args[1], The filter type.
+     */
+    public static void main(String[] args) {
+        int size = args.length > 1 ? matrixSize(args[1]) : 4;
+        if (size == 0){
+            System.err.println("Unknown filter type: " + args[1]);
+            return;
+        }
+        ReducePalette m = new ReducePaletteOrdered(read_in_file(args[0]), false, size, new PixelizeOptions());
+    }
+}
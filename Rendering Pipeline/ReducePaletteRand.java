@@ -1,6 +1,8 @@
 /**
  * Passes in an image and reduces it's palette to the palette contained in the file palette.csv.
  * This also dithers randomly any pixels that are too close to two colors in palette.csv.
+ * The random number for each pixel is a hash of the seed, the frame, and the pixel's position, so the same seed and frame always give the same image,
+ * no matter how many threads there are or which order the pixels are picked in, and nothing is made for each pixel.
  * This can be run from the terminal for testing purposes.
  * <br>
  * Compilation:  javac ReducePaletteRand.java <br>
@@ -15,9 +17,9 @@
 
 import java.awt.image.BufferedImage;
 import static java.lang.Math.abs;
-import java.util.Random;
 
 public class ReducePaletteRand extends ReducePalette{
+
     /**
      * This is the constructor for ReducePaletteRand. It runs the constructor from it's parent class.
      * @param original BufferedImage, the original image that this object edits.
@@ -26,28 +28,84 @@ public class ReducePaletteRand extends ReducePalette{
         super(original, do_not_visualize);
     }
 
+    /**
+     * This is the constructor for ReducePaletteRand with a set of options. It runs the constructor from it's parent class.
+     * @param original BufferedImage, the original image that this object edits.
+     * @param options PixelizeOptions, the optional settings for this run.
+     */
+    public ReducePaletteRand(BufferedImage original, boolean do_not_visualize, PixelizeOptions options){
+        super(original, do_not_visualize, options);
+    }
+
+    /**
+     * This is the constructor for ReducePaletteRand with a palette that has already been loaded. It runs the constructor from it's parent class.
+     * @param original BufferedImage, the original image that this object edits.
+     * @param palette Palette, the palette the image is reduced to.
+     * @param options PixelizeOptions, the optional settings for this run.
+     */
+    public ReducePaletteRand(BufferedImage original, boolean do_not_visualize, Palette palette, PixelizeOptions options){
+        super(original, do_not_visualize, palette, options);
+    }
+
+    /**
+     * This is the constructor for a ReducePaletteRand that only picks colors and doesn't filter an image, see the matching ReducePalette constructor.
+     * @param options PixelizeOptions, the optional settings for this run.
+     */
+    public ReducePaletteRand(PixelizeOptions options){
+        super(options);
+    }
+
+    /**
+     * This is the constructor for a ReducePaletteRand that only picks colors from a palette that has already been loaded.
+     * @param palette Palette, the palette colors are picked from.
+     * @param options PixelizeOptions, the optional settings for this run.
+     */
+    public ReducePaletteRand(Palette palette, PixelizeOptions options){
+        super(palette, options);
+    }
+
+    /**
+     * The random number for one pixel, made by mixing the seed, the frame, and the position together. It's the same every time it's asked for.
+     * @param seed long, the seed in the options.
+     * @param frame long, the frame in the options.
+     * @param row int, the row of the pixel.
+     * @param col int, the column of the pixel.
+     * @return random int, 32 random bits.
+     */
+    static int random(long seed, long frame, int row, int col){
+        long counter = mix(seed + 0x9E3779B97F4A7C15L * (frame + 1));
+        counter = mix(counter + (((long)row << 32) | (col & 0xFFFFFFFFL)));
+        return (int)(counter >>> 32);
+    }
+
+    /**
+     * The SplitMix64 finalizer, which spreads every bit of its input over every bit of its output.
+     */
+    private static long mix(long z){
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
 
     /**
      * Returns the int index of the highest scoring color in the color palette.
-     * If the highest and second highest scoring colors are within 50 score of each other the second highest scoring color appears based on a percentage of how close the color is to the highest and second highest scoring colors.
-     * @param scores double[], The list of scores based on how similar each color is to it.
+     * If the highest and second highest scoring colors are within 100 score of each other the second highest scoring color appears based on a percentage of how close the color is to the highest and second highest scoring colors.
+     * @param rgb int, the color of the pixel.
+     * @param row int, the row of the pixel.
+     * @param col int, the column of the pixel.
      * @return current_highest int, the int index of the highest scoring color in the color palette based on how similar it is to the base color.
      */
-    protected int findHighest(double[] scores){
-        int current_highest = 0;
-        int second_highest = 0;
-        Random rand = new Random();
-        for (int i = 1; i< scores.length; i++){
-            if (scores[i] > scores[current_highest]){
-                second_highest = current_highest;
-                current_highest = i;
-            }
-        }
+    protected int pickColor(int rgb, int row, int col){
+        int current_highest = color_search.nearest(rgb);
+        int second_highest = color_search.runnerUp(rgb, current_highest);
 
-        if (abs(scores[current_highest] - scores[second_highest]) < 100)
+        //the difference in score is the same as the difference in distance.
+        int score_gap = abs(colorDistance(rgb, second_highest) - colorDistance(rgb, current_highest));
+        if (score_gap < 100)
         {
-            //I needed a +1 here because if it returns less than 1 than nextInt will not work. I added 1 to the other side of the equation so it works despite this.
-            if (rand.nextInt((int)(scores[current_highest] - scores[second_highest] + 1)) > 51){
+            //a random number from 0 to score_gap, the same range nextInt(score_gap + 1) gave.
+            int roll = (int)(((random(options.seed, options.frame, row, col) & 0xFFFFFFFFL) * (score_gap + 1)) >>> 32);
+            if (roll > 51){
                 current_highest = second_highest;
             }
         }
@@ -35,7 +35,7 @@ public class ReducePaletteTrans extends ImageEditParent {
         original_image = original;
         String[][] string_palette = paletteToStrings();
         color_palette = stringsToColor(string_palette);
-        displayImage(scoreImage(), "ReducedImage");
+        ImageViewer.displayImage(scoreImage(), "ReducedImage");
         final_image = scoreImage();
     }
 
@@ -0,0 +1,85 @@
+/**
+ * Runs a filter's row loop on several threads by cutting the image into bands of rows and handing the bands to a ForkJoinPool.
+ * Bands are always BAND_HEIGHT rows tall no matter how many threads there are, so anything that depends on the band a row is in
+ * comes out the same with any number of threads.
+ * <br>
+ * This file has no testing functionality. Running it from the terminal will do nothing.
+ */
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class RowBands {
+    public static final int BAND_HEIGHT = 16;
+
+    //one pool per parallelism level, made the first time that level is asked for and kept for the rest of the run.
+    private static final ConcurrentHashMap<Integer, ForkJoinPool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * The work done on one band, every row from first_row up to but not including end_row.
+     */
+    interface Band{
+        void run(int first_row, int end_row);
+    }
+
+    /**
+     * Runs band over every row from 0 to height. With a parallelism of 1 the whole image is one call on the current thread.
+     * @param height int, the number of rows.
+     * @param parallelism int, the number of threads to spread the bands over.
+     * @param band Band, the work for each band. Bands run at the same time, so it must only write to its own rows.
+     */
+    public static void run(int height, int parallelism, Band band){
+        int band_count = bandCount(height);
+        if (parallelism <= 1 || band_count <= 1){
+            band.run(0, height);
+            return;
+        }
+        pool(parallelism).invoke(new BandTask(band, height, 0, band_count));
+    }
+
+    /**
+     * The pool for a parallelism level, for filters that can't be cut into fixed bands and hand out their own work, like ReducePaletteDiffuse.
+     * @param parallelism int, the number of threads.
+     * @return pool ForkJoinPool, the pool with that many threads, shared by every filter that asks for the same number.
+     */
+    static ForkJoinPool pool(int parallelism){
+        return pools.computeIfAbsent(parallelism, ForkJoinPool::new);
+    }
+
+    /**
+     * The number of bands an image of the given height is cut into.
+     * @param height int, the number of rows.
+     * @return band_count int, the number of bands.
+     */
+    public static int bandCount(int height){
+        return (height + BAND_HEIGHT - 1) / BAND_HEIGHT;
+    }
+
+    /**
+     * Splits a range of bands in half until it is a single band, then runs it.
+     */
+    private static class BandTask extends RecursiveAction{
+        private static final long serialVersionUID = 1L;
+        private final Band band;
+        private final int height;
+        private final int first_band;
+        private final int end_band;
+
+        BandTask(Band band, int height, int first_band, int end_band){
+            this.band = band;
+            this.height = height;
+            this.first_band = first_band;
+            this.end_band = end_band;
+        }
+
+        protected void compute(){
+            if (end_band - first_band == 1){
+                band.run(first_band * BAND_HEIGHT, Math.min((first_band + 1) * BAND_HEIGHT, height));
+                return;
+            }
+            int middle = (first_band + end_band) / 2;
+            invokeAll(new BandTask(band, height, first_band, middle), new BandTask(band, height, middle, end_band));
+        }
+    }
+}
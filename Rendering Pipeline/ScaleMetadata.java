@@ -0,0 +1,130 @@
+/**
+ * Records how much an image left at the lowered resolution should be scaled up by, so it can be saved small and scaled up by whatever
+ * displays it, with nearest neighbour filtering, or by ExpandImage.
+ * <br>
+ * PNG files keep the coefficient in a tEXt chunk with the keyword "pixelize scale", which PNG readers that don't know about it skip.
+ * Every other format gets a sidecar file next to the image, named after it with ".scale" on the end, holding the coefficient on one line.
+ * The encoders write it, see ImageEncoder, and read reads it back from either. An image saved without a sidecar has any old one deleted.
+ * <br>
+ * This file has no testing functionality. Running it from the terminal will do nothing.
+ */
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOInvalidTreeException;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Iterator;
+import org.w3c.dom.Node;
+
+public final class ScaleMetadata {
+    public static final String KEYWORD = "pixelize scale";
+    public static final String SIDECAR_EXTENSION = ".scale";
+    private static final String PNG_FORMAT = "javax_imageio_png_1.0";
+
+    private ScaleMetadata(){}
+
+    /**
+     * Adds the scale to the metadata the ImageIO PNG writer saves with an image, see ImageIOEncoder.
+     * @param metadata IIOMetadata, the PNG writer's image metadata.
+     * @param resolution_coefficient int, how much the image should be scaled up by.
+     * @throws IIOInvalidTreeException if the metadata isn't the PNG writer's.
+     */
+    public static void addPngText(IIOMetadata metadata, int resolution_coefficient) throws IIOInvalidTreeException{
+        IIOMetadataNode entry = new IIOMetadataNode("tEXtEntry");
+        entry.setAttribute("keyword", KEYWORD);
+        entry.setAttribute("value", Integer.toString(resolution_coefficient));
+        IIOMetadataNode text = new IIOMetadataNode("tEXt");
+        text.appendChild(entry);
+        IIOMetadataNode root = new IIOMetadataNode(PNG_FORMAT);
+        root.appendChild(text);
+        metadata.mergeTree(PNG_FORMAT, root);
+    }
+
+    /**
+     * Writes the sidecar that records the scale of an image that isn't a PNG.
+     * @param file File, the image.
+     * @param resolution_coefficient int, how much the image should be scaled up by.
+     * @throws IOException if the sidecar can't be written.
+     */
+    public static void writeSidecar(File file, int resolution_coefficient) throws IOException{
+        Files.write(sidecar(file).toPath(), (resolution_coefficient + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Deletes the sidecar of an image saved without one, so a scale left over from an earlier save isn't read back for it.
+     * @param file File, the image.
+     * @throws IOException if the sidecar can't be deleted.
+     */
+    public static void removeSidecar(File file) throws IOException{
+        Files.deleteIfExists(sidecar(file).toPath());
+    }
+
+    /**
+     * Reads the scale recorded for an image.
+     * @param file File, the image.
+     * @return resolution_coefficient int, the recorded scale, or 0 if there isn't one.
+     * @throws IOException if the image or its sidecar can't be read.
+     */
+    public static int read(File file) throws IOException{
+        File sidecar = sidecar(file);
+        if (sidecar.isFile()){
+            return Integer.parseInt(new String(Files.readAllBytes(sidecar.toPath()), StandardCharsets.UTF_8).trim());
+        }
+
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)){
+            if (input == null){
+                throw new IOException(String.format("Can't open %s", file));
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()){
+                return 0;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, false);
+                IIOMetadata metadata = reader.getImageMetadata(0);
+                if (metadata == null || !PNG_FORMAT.equals(metadata.getNativeMetadataFormatName())){
+                    return 0;
+                }
+                return findScale(metadata.getAsTree(PNG_FORMAT));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    //looks through the tEXt entries for the scale.
+    private static int findScale(Node node){
+        if (node.getNodeName().equals("tEXtEntry")){
+            IIOMetadataNode entry = (IIOMetadataNode)node;
+            if (entry.getAttribute("keyword").equals(KEYWORD)){
+                return Integer.parseInt(entry.getAttribute("value").trim());
+            }
+        }
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()){
+            int scale = findScale(child);
+            if (scale > 0){
+                return scale;
+            }
+        }
+        return 0;
+    }
+
+    static boolean isPng(String format){
+        return format.equalsIgnoreCase("png");
+    }
+
+    /**
+     * @param file File, an image.
+     * @return sidecar File, where the image's scale is kept if it isn't a PNG.
+     */
+    public static File sidecar(File file){
+        return new File(file.getPath() + SIDECAR_EXTENSION);
+    }
+}
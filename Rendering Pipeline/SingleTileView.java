@@ -0,0 +1,82 @@
+/**
+ * The parts of a view shared by UpscaledView and StripPixelize, images whose pixels are only worked out when they are asked for. The view is one tile
+ * the size of the whole image, with no sources or properties, and every way of asking for pixels comes down to copyInto.
+ * <br>
+ * This file has no testing functionality. Running it from the terminal will do nothing.
+ */
+
+import java.awt.*;
+import java.awt.image.*;
+import java.util.Vector;
+
+public abstract class SingleTileView implements RenderedImage{
+
+    /**
+     * Fills part of a raster with the view's pixels.
+     * @param raster WritableRaster, the raster being filled, in the coordinates of the view.
+     * @param bounds Rectangle, the part being filled, inside both the raster and the image, and never empty.
+     */
+    protected abstract void copyInto(WritableRaster raster, Rectangle bounds);
+
+    /**
+     * Works out the part of the image asked for.
+     * @param rect Rectangle, the part of the image asked for.
+     * @return raster Raster, the pixels in that part, placed at the rectangle's position.
+     */
+    public Raster getData(Rectangle rect){
+        Rectangle bounds = rect.intersection(bounds());
+        WritableRaster raster = Raster.createWritableRaster(getSampleModel().createCompatibleSampleModel(bounds.width, bounds.height), new Point(bounds.x, bounds.y));
+        if (!bounds.isEmpty()){
+            copyInto(raster, bounds);
+        }
+        return raster;
+    }
+
+    public Raster getData(){
+        return getData(bounds());
+    }
+
+    public WritableRaster copyData(WritableRaster raster){
+        if (raster == null){
+            return (WritableRaster)getData();
+        }
+        Rectangle bounds = raster.getBounds().intersection(bounds());
+        if (!bounds.isEmpty()){
+            copyInto(raster, bounds);
+        }
+        return raster;
+    }
+
+    private Rectangle bounds(){
+        return new Rectangle(0, 0, getWidth(), getHeight());
+    }
+
+    public int getMinX(){ return 0; }
+
+    public int getMinY(){ return 0; }
+
+    //the view is one tile the size of the whole image.
+    public int getNumXTiles(){ return 1; }
+
+    public int getNumYTiles(){ return 1; }
+
+    public int getMinTileX(){ return 0; }
+
+    public int getMinTileY(){ return 0; }
+
+    public int getTileWidth(){ return getWidth(); }
+
+    public int getTileHeight(){ return getHeight(); }
+
+    public int getTileGridXOffset(){ return 0; }
+
+    public int getTileGridYOffset(){ return 0; }
+
+    public Raster getTile(int tileX, int tileY){ return getData(); }
+
+    public Vector<RenderedImage> getSources(){ return null; }
+
+    public Object getProperty(String name){ return Image.UndefinedProperty; }
+
+    public String[] getPropertyNames(){ return null; }
+}
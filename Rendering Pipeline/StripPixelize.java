@@ -0,0 +1,208 @@
+/**
+ * Pixelizes an image file a strip at a time, for images too big to hold in memory. Each strip is a set number of rows of blocks. Its rows
+ * are read straight out of the file with an ImageReader source region, and each block gets its mean, chromakey and palette color the same way
+ * FusedPixelize does it, before the strip is scaled up. Only the strip being worked on is ever in memory, in and out.
+ * <br>
+ * It's a SingleTileView like UpscaledView, so it can be passed to ImageIO.write. The PNG writer asks for one row at a time, and a strip is only made
+ * when the writer gets to its first row, so the output is written a strip at a time too. Anything that asks for the whole image at once gets
+ * every strip built for it.
+ * <br>
+ * The pixels come out the same as the fused pass, and with the indexed option the output is indexed the same way too. Only the palette reducers that pick each block on its own work a strip at a time,
+ * error diffusion needs the blocks above, so canStrip leaves it to the whole image path.
+ * PNG and JPEG readers decode a file from the start for every source region, so a few tall strips are quicker than many short ones,
+ * at the cost of memory.
+ * <br>
+ * The file stays open until close is called.
+ * This file has no testing functionality. Running it from the terminal will do nothing.
+ */
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.*;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+
+public class StripPixelize extends SingleTileView implements Closeable{
+    private final ImageInputStream input;
+    private final ImageReader reader;
+    private final int resolution_coefficient;
+    private final int block;
+    private final ChromaKey key;
+    private final ReducePalette reduce;
+    private final boolean box;
+    private final int parallelism;
+
+    //the size of the original, the number of blocks, and the size of the output.
+    private final int source_width;
+    private final int source_height;
+    private final int cells_wide;
+    private final int cells_high;
+    private final int width;
+    private final int height;
+    //rows of blocks in a strip.
+    private final int strip_cells;
+    //a blank block reads back as transparent black if the original has alpha and as opaque black if it doesn't.
+    private final int blank;
+    //with the indexed option the strips hold palette indexes, and the color model is the palette's color table.
+    private final boolean indexed;
+    private final int clear;
+    private final ColorModel color_model;
+    private final SampleModel sample_model;
+
+    //the strip that was made last and its output pixels, strip_cells * block rows of width, or -1 before any is made.
+    private int current_strip = -1;
+    private int[] strip_pixels;
+
+    /**
+     * The constructor of the StripPixelize object. Opens the file and reads its size, nothing is pixelized until pixels are asked for.
+     * @param file File, the image being pixelized.
+     * @param resolution_coefficient int, the amount of downscaling and upscaling that will happen to the image.
+     * @param do_not_upscale boolean, whether the image is left at the lowered resolution.
+     * @param chromakey boolean, whether the image is chromakeyed after the resolution is reduced.
+     * @param reduce ReducePalette, the palette reducer that picks each block's color, made with the constructor that doesn't filter an image.
+     * @param options PixelizeOptions, the optional settings for this run. strip sets the rows of blocks in a strip.
+     * @throws IOException if the file can't be opened or isn't an image.
+     */
+    public StripPixelize(File file, int resolution_coefficient, boolean do_not_upscale, boolean chromakey, ReducePalette reduce, PixelizeOptions options) throws IOException{
+        //checked before the file is opened, so it isn't left open.
+        if (options.indexed){
+            reduce.palette.requireIndexable("The indexed option");
+        }
+        input = ImageIO.createImageInputStream(file);
+        if (input == null){
+            throw new IOException(String.format("Can't open %s", file));
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()){
+            input.close();
+            throw new IOException(String.format("Not a readable image: %s", file));
+        }
+        reader = readers.next();
+        reader.setInput(input, true, true);
+
+        this.resolution_coefficient = resolution_coefficient;
+        block = do_not_upscale ? 1 : resolution_coefficient;
+        key = chromakey ? ChromaKey.fromOptions(options) : null;
+        this.reduce = reduce;
+        box = DownscaleImage.isBox(options);
+        parallelism = options.threads;
+
+        source_width = reader.getWidth(0);
+        source_height = reader.getHeight(0);
+        cells_wide = DownscaleImage.cellCount(source_width, resolution_coefficient, box);
+        cells_high = DownscaleImage.cellCount(source_height, resolution_coefficient, box);
+        width = cells_wide * block;
+        height = cells_high * block;
+        strip_cells = Math.max(1, options.strip);
+
+        boolean source_alpha = reader.getImageTypes(0).next().getColorModel().hasAlpha();
+        blank = source_alpha ? 0 : 0xFF000000;
+        indexed = options.indexed;
+        clear = indexed ? reduce.palette.transparentPixelIndex() : reduce.transARGB;
+        //GreenScreen always hands on an image with alpha, otherwise the output has alpha if the original does.
+        if (indexed){
+            color_model = reduce.palette.colorModel(true);
+        } else if (key != null || source_alpha){
+            color_model = ColorModel.getRGBdefault();
+        } else {
+            color_model = new DirectColorModel(24, 0xFF0000, 0xFF00, 0xFF);
+        }
+        sample_model = color_model.createCompatibleSampleModel(width, height);
+    }
+
+    /**
+     * Checks whether a filter type can be pixelized a strip at a time.
+     * @param filterType String, the type of filtering that will be applied to the image.
+     * @return can_strip boolean, false for error diffusion, which needs the whole image.
+     */
+    public static boolean canStrip(String filterType){
+        return ReducePaletteDiffuse.kernel(filterType) == null;
+    }
+
+    /**
+     * Reads the rows of the original one strip needs and pixelizes them into strip_pixels.
+     * @param strip int, the strip, counted from the top.
+     */
+    private void makeStrip(int strip){
+        int first_cell = strip * strip_cells;
+        int end_cell = Math.min(first_cell + strip_cells, cells_high);
+        //the rows inside the windows of the strip's blocks, centred windows start half a window above the block.
+        int shift = box ? 0 : resolution_coefficient / 2;
+        int top = Math.max(first_cell * resolution_coefficient - shift, 0);
+        int bottom = Math.min(end_cell * resolution_coefficient - shift, source_height);
+
+        int[] pixels = new int[0];
+        if (top < bottom){
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceRegion(new Rectangle(0, top, source_width, bottom - top));
+            try {
+                pixels = ImageEditParent.readPixels(reader.read(0, param));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        if (strip_pixels == null){
+            strip_pixels = new int[width * strip_cells * block];
+        }
+
+        int[] strip_source = pixels;
+        RowBands.run(end_cell - first_cell, parallelism, (first_row, end_row) -> {
+            int[] sums = new int[DownscaleImage.sumsLength(source_width)];
+            int[] means = new int[(source_width + resolution_coefficient - 1) / resolution_coefficient];
+            for (int cell_row = first_cell + first_row; cell_row < first_cell + end_row; cell_row++) {
+                //the strip holds indexes as ints, which are set as samples when it's copied out.
+                FusedPixelize.pixelizeCellRow(strip_source, top, source_width, source_height, cell_row, resolution_coefficient, box, blank, key, reduce,
+                        indexed, clear, null, sums, means, strip_pixels, (cell_row - first_cell) * block * width, cells_wide, block);
+            }
+        });
+        current_strip = strip;
+    }
+
+    /**
+     * Fills part of a raster one output row at a time, making each strip it covers in turn. Asking for the rows in order makes every strip once.
+     * Only one part is filled at a time, since they share the strip that was made last.
+     * @param raster WritableRaster, the raster being filled, in the coordinates of the output.
+     * @param bounds Rectangle, the part being filled, inside both the raster and the image.
+     */
+    protected synchronized void copyInto(WritableRaster raster, Rectangle bounds){
+        int strip_rows = strip_cells * block;
+        int[] row = new int[bounds.width];
+        for (int y = bounds.y; y < bounds.y + bounds.height; y++){
+            int strip = y / strip_rows;
+            if (strip != current_strip){
+                makeStrip(strip);
+            }
+            int offset = (y - strip * strip_rows) * width + bounds.x;
+            System.arraycopy(strip_pixels, offset, row, 0, bounds.width);
+            if (indexed){
+                //packed rasters hold several indexes to an element, so the indexes are set as samples.
+                raster.setSamples(bounds.x, y, bounds.width, 1, 0, row);
+            } else {
+                raster.setDataElements(bounds.x, y, bounds.width, 1, row);
+            }
+        }
+    }
+
+    /**
+     * Closes the file.
+     * @throws IOException if the file can't be closed.
+     */
+    public void close() throws IOException{
+        reader.dispose();
+        input.close();
+    }
+
+    public ColorModel getColorModel(){ return color_model; }
+
+    public SampleModel getSampleModel(){ return sample_model; }
+
+    public int getWidth(){ return width; }
+
+    public int getHeight(){ return height; }
+}
@@ -1,6 +1,10 @@
 import java.awt.image.*;
 /**
  * Makes an image passed into it scale up by the resolution multiplier.
+ * Each row of the original is stretched into one row of the output, which is then copied into the rest of the rows it covers with System.arraycopy.
+ * The common image types are scaled in their own pixel format, so the much larger output never has to be converted.
+ * <br>
+ * When the upscaled image is only going to be saved, UpscaledView can stand in for it without ever holding the whole thing in memory.
  * <br>
  * This file has no testing functionality. Running it from the terminal will do nothing.
  * <br>
@@ -16,8 +20,18 @@ public class UpscaleImage extends ImageEditParent{
      * @param resolution_multiplier int, the multiplier for the size of the image.
      */
     public UpscaleImage(BufferedImage original, int resolution_multiplier, boolean do_not_visualize){
+        this(original, resolution_multiplier, do_not_visualize, new PixelizeOptions());
+    }
+
+    /**
+     * The constructor of the UpscaleImage object with a set of options, which set how many threads it runs on.
+     * @param original BufferedImage, the original image that this object edits.
+     * @param resolution_multiplier int, the multiplier for the size of the image.
+     * @param options PixelizeOptions, the optional settings for this run.
+     */
+    public UpscaleImage(BufferedImage original, int resolution_multiplier, boolean do_not_visualize, PixelizeOptions options){
         if (resolution_multiplier != 1) {
-            final_image = resize(original, resolution_multiplier);
+            final_image = resize(original, resolution_multiplier, options.threads);
         }
         else
         {
@@ -25,7 +39,7 @@ public class UpscaleImage extends ImageEditParent{
         }
 
         if (!do_not_visualize) {
-            displayImage(final_image, "Upscaled Image.");
+            ImageViewer.displayImage(final_image, "Upscaled Image.");
         }
     }
 
@@ -33,21 +47,94 @@ public class UpscaleImage extends ImageEditParent{
      * Resizes the original image, multiplying it's size by the resolution_multiplier.
      * @param original BufferedImage, the original image that this edits.
      * @param resolution_multiplier int, the multiplier for the size of the image.
+     * @param parallelism int, the number of threads the rows are spread over.
      * @return duplicate BufferedImage, the resized image.
      */
-    private BufferedImage resize(BufferedImage original, int resolution_multiplier){
-        BufferedImage duplicate = new BufferedImage(original.getWidth()*resolution_multiplier, original.getHeight()*resolution_multiplier, original.getType());
-        int rgb;
-        for (int row=0; row<original.getHeight(); row += 1) {
-            for (int col = 0; col < original.getWidth(); col += 1) {
-                rgb = original.getRGB(col, row);
-                for (int sRow = 0; sRow < resolution_multiplier; sRow++) {
-                    for (int sCol = 0; sCol < resolution_multiplier; sCol++) {
-                            duplicate.setRGB((col * resolution_multiplier) + sCol, (row *resolution_multiplier)+sRow, rgb);
-                        }
-                    }
+    private BufferedImage resize(BufferedImage original, int resolution_multiplier, int parallelism){
+        int width = original.getWidth();
+        int height = original.getHeight();
+        int duplicate_width = width * resolution_multiplier;
+        int duplicate_height = height * resolution_multiplier;
+
+        //plain rasters are copied as they are stored, anything else is scaled as packed ARGB pixels and converted at the end.
+        BufferedImage duplicate = null;
+        Object pixels;
+        Object duplicate_pixels;
+        int elements_per_pixel = 1;
+        if (isPlainRaster(original)){
+            duplicate = new BufferedImage(duplicate_width, duplicate_height, original.getType());
+            pixels = rasterData(original);
+            duplicate_pixels = rasterData(duplicate);
+            if (pixels instanceof byte[]){
+                elements_per_pixel = ((byte[])pixels).length / (width * height);
+            }
+        } else {
+            pixels = readPixels(original);
+            duplicate_pixels = new int[duplicate_width * duplicate_height];
+        }
+
+        int row_length = duplicate_width * elements_per_pixel;
+        int per_pixel = elements_per_pixel;
+        RowBands.run(height, parallelism, (first_row, end_row) -> {
+            for (int row=first_row; row<end_row; row += 1) {
+                int offset = row * resolution_multiplier * row_length;
+                stretchRow(pixels, row * width * per_pixel, duplicate_pixels, offset, width, per_pixel, resolution_multiplier);
+                for (int sRow = 1; sRow < resolution_multiplier; sRow++) {
+                    System.arraycopy(duplicate_pixels, offset, duplicate_pixels, offset + sRow * row_length, row_length);
                 }
             }
+        });
+
+        if (duplicate == null){
+            return writePixels((int[])duplicate_pixels, duplicate_width, duplicate_height, original.getType());
+        }
         return duplicate;
     }
+
+    /**
+     * Returns the array a plain raster's pixels are stored in, an int[] for the int types and a byte[] for the byte types.
+     * @param img BufferedImage, an image that passes isPlainRaster.
+     * @return data Object, the array backing the image.
+     */
+    private static Object rasterData(BufferedImage img){
+        DataBuffer buffer = img.getRaster().getDataBuffer();
+        if (buffer instanceof DataBufferInt){
+            return ((DataBufferInt)buffer).getData();
+        }
+        return ((DataBufferByte)buffer).getData();
+    }
+
+    /**
+     * Writes one row of pixels into the destination with every pixel repeated resolution_multiplier times.
+     * @param pixels Object, the int[] or byte[] the source row is in.
+     * @param start int, the index of the first element of the source row.
+     * @param duplicate Object, the array of the same type the stretched row is written into.
+     * @param offset int, the index the stretched row starts at.
+     * @param width int, the number of pixels in the source row.
+     * @param elements_per_pixel int, the number of array elements each pixel takes up.
+     * @param resolution_multiplier int, the number of times each pixel is repeated.
+     */
+    static void stretchRow(Object pixels, int start, Object duplicate, int offset, int width, int elements_per_pixel, int resolution_multiplier){
+        if (pixels instanceof int[]){
+            int[] source = (int[])pixels;
+            int[] destination = (int[])duplicate;
+            for (int col = 0; col < width; col++) {
+                int rgb = source[start + col];
+                for (int sCol = 0; sCol < resolution_multiplier; sCol++) {
+                    destination[offset++] = rgb;
+                }
+            }
+            return;
+        }
+        byte[] source = (byte[])pixels;
+        byte[] destination = (byte[])duplicate;
+        for (int col = 0; col < width; col++) {
+            int pixel = start + col * elements_per_pixel;
+            for (int sCol = 0; sCol < resolution_multiplier; sCol++) {
+                for (int element = 0; element < elements_per_pixel; element++) {
+                    destination[offset++] = source[pixel + element];
+                }
+            }
+        }
+    }
 }
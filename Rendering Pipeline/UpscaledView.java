@@ -0,0 +1,91 @@
+/**
+ * A view of an image scaled up by a whole number, the same image UpscaleImage makes, except the pixels are only worked out when they are asked for.
+ * It can be passed to ImageIO.write in place of the upscaled image. The PNG writer asks for one row at a time, so the full size image never exists in memory.
+ * Anything that asks for the whole image at once, like getData(), gets the whole image built for it. See SingleTileView for the rest of the view.
+ * <br>
+ * This file has no testing functionality. Running it from the terminal will do nothing.
+ */
+
+import java.awt.*;
+import java.awt.image.*;
+import java.lang.reflect.Array;
+
+public class UpscaledView extends SingleTileView{
+    private final BufferedImage original;
+    private final int resolution_multiplier;
+    private final int width;
+    private final int height;
+    private final SampleModel sample_model;
+
+    /**
+     * The constructor of the UpscaledView object. Nothing is scaled until pixels are asked for.
+     * @param original BufferedImage, the image being scaled up. It must not change while the view is in use.
+     * @param resolution_multiplier int, the multiplier for the size of the image.
+     */
+    public UpscaledView(BufferedImage original, int resolution_multiplier){
+        this.original = original;
+        this.resolution_multiplier = resolution_multiplier;
+        width = original.getWidth() * resolution_multiplier;
+        height = original.getHeight() * resolution_multiplier;
+        sample_model = original.getSampleModel().createCompatibleSampleModel(width, height);
+    }
+
+    /**
+     * Fills part of a raster with the upscaled pixels, the same way UpscaleImage does it. Every output row of a source row is the same,
+     * so each source row is only read and stretched once.
+     * @param raster WritableRaster, the raster being filled, in the coordinates of the upscaled image.
+     * @param bounds Rectangle, the part being filled, inside both the raster and the image.
+     */
+    protected void copyInto(WritableRaster raster, Rectangle bounds){
+        Raster source = original.getRaster();
+        int first_col = bounds.x / resolution_multiplier;
+        int end_col = (bounds.x + bounds.width - 1) / resolution_multiplier + 1;
+        int elements_per_pixel = source.getNumDataElements();
+        int last_source_row = -1;
+        Object source_row = null;
+        Object stretched = null;
+        Object row = null;
+
+        for (int y = bounds.y; y < bounds.y + bounds.height; y++){
+            int source_row_num = y / resolution_multiplier;
+            if (source_row_num != last_source_row){
+                source_row = source.getDataElements(first_col, source_row_num, end_col - first_col, 1, source_row);
+                if (stretched == null){
+                    stretched = Array.newInstance(source_row.getClass().getComponentType(),
+                            (end_col - first_col) * resolution_multiplier * elements_per_pixel);
+                    row = Array.newInstance(source_row.getClass().getComponentType(), bounds.width * elements_per_pixel);
+                }
+                stretchRow(source_row, stretched, end_col - first_col, elements_per_pixel);
+                //the stretched row starts at the first source column, which can be a little to the left of the rectangle.
+                System.arraycopy(stretched, (bounds.x - first_col * resolution_multiplier) * elements_per_pixel, row, 0, bounds.width * elements_per_pixel);
+                last_source_row = source_row_num;
+            }
+            raster.setDataElements(bounds.x, y, bounds.width, 1, row);
+        }
+    }
+
+    /**
+     * Repeats every pixel of a row resolution_multiplier times, one array element at a time so it works for any transfer type.
+     */
+    private void stretchRow(Object source_row, Object stretched, int pixel_count, int elements_per_pixel){
+        if ((source_row instanceof int[] && elements_per_pixel == 1) || source_row instanceof byte[]){
+            UpscaleImage.stretchRow(source_row, 0, stretched, 0, pixel_count, elements_per_pixel, resolution_multiplier);
+            return;
+        }
+        int offset = 0;
+        for (int col = 0; col < pixel_count; col++){
+            for (int sCol = 0; sCol < resolution_multiplier; sCol++){
+                System.arraycopy(source_row, col * elements_per_pixel, stretched, offset, elements_per_pixel);
+                offset += elements_per_pixel;
+            }
+        }
+    }
+
+    public ColorModel getColorModel(){ return original.getColorModel(); }
+
+    public SampleModel getSampleModel(){ return sample_model; }
+
+    public int getWidth(){ return width; }
+
+    public int getHeight(){ return height; }
+}
@@ -0,0 +1,18 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Times palette reduction with each of the reducers across palette sizes and the color searches that run on any Java version, see PaletteReducers.
+ * The vector search is timed by PaletteVectorBenchmark, since its forks need the Vector API module.
+ */
+@Fork(1)
+public class PaletteBenchmark extends PaletteReducers {
+    @Param({"lut", "kdtree", "linear"})
+    public String search;
+
+    @Override
+    protected String search(){
+        return search;
+    }
+}
@@ -0,0 +1,80 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The palette reduction cases PaletteBenchmark and PaletteVectorBenchmark share, one for each of the reducers, ReducePalette, ReducePaletteDith,
+ * ReducePaletteRand, ReducePaletteOrdered and ReducePaletteDiffuse. Error diffusion is timed with a serpentine scan and as a wavefront over the threads.
+ * The palette is built once in setup, like it is when the same palette is used for many images, so this times the per image work.
+ * The subclasses pick the color searches and how the forks are started.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Benchmark)
+public abstract class PaletteReducers {
+    //the reducers see the downscaled image, so these are about the sizes they get.
+    @Param({"160x120", "480x270"})
+    public String size;
+
+    @Param({"8", "64", "256"})
+    public int palette_size;
+
+    @Param({"INT_RGB"})
+    public String image_type;
+
+    @Param({"1"})
+    public int threads;
+
+    private BufferedImage original;
+    private Object palette;
+    private Object options;
+    private Object wavefront_options;
+
+    //the color search the reducers use.
+    protected abstract String search();
+
+    @Setup
+    public void setup(){
+        original = SyntheticImages.image(size, SyntheticImages.imageType(image_type), 2021);
+        palette = Pipeline.palette(SyntheticImages.paletteColors(palette_size, palette_size));
+        options = Pipeline.options("threads=" + threads, "search=" + search());
+        wavefront_options = Pipeline.options("threads=" + threads, "search=" + search(), "serpentine=false");
+        //builds the palette's search before timing starts.
+        Pipeline.reduce("none", original, palette, options);
+    }
+
+    @Benchmark
+    public BufferedImage reducePalette(){
+        return Pipeline.reduce("none", original, palette, options);
+    }
+
+    @Benchmark
+    public BufferedImage reducePaletteDith(){
+        return Pipeline.reduce("dither", original, palette, options);
+    }
+
+    @Benchmark
+    public BufferedImage reducePaletteRand(){
+        return Pipeline.reduce("random", original, palette, options);
+    }
+
+    @Benchmark
+    public BufferedImage reducePaletteOrdered(){
+        return Pipeline.reduce("bayer4", original, palette, options);
+    }
+
+    @Benchmark
+    public BufferedImage reducePaletteDiffuse(){
+        return Pipeline.reduce("floyd-steinberg", original, palette, options);
+    }
+
+    @Benchmark
+    public BufferedImage reducePaletteDiffuseWavefront(){
+        return Pipeline.reduce("floyd-steinberg", original, palette, wavefront_options);
+    }
+}
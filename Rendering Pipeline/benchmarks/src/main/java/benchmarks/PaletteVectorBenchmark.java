@@ -0,0 +1,15 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Times palette reduction with each of the reducers across palette sizes using the vector search, see PaletteReducers.
+ * The forks add the Vector API module, so this needs Java 17 or newer. On Java 11, run PaletteBenchmark and leave this one out.
+ */
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class PaletteVectorBenchmark extends PaletteReducers {
+    @Override
+    protected String search(){
+        return "vector";
+    }
+}
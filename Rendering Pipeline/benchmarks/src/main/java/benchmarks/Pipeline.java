@@ -0,0 +1,166 @@
+package benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Calls into the rendering pipeline for the benchmarks. The pipeline's classes are in the default package, which can't be imported from a package,
+ * and JMH won't run benchmarks that are in the default package themselves, so every class is looked up by name once and called through a MethodHandle.
+ * The handles are static finals, so the JIT treats them like direct calls.
+ */
+final class Pipeline {
+    private static final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+    private static final Class<?> OPTIONS = load("PixelizeOptions");
+    private static final Class<?> PALETTE = load("Palette");
+    private static final Class<?> DIFFUSE = load("ReducePaletteDiffuse");
+    private static final Class<?> KERNEL = load("ReducePaletteDiffuse$Kernel");
+
+    private static final MethodHandle PARSE_OPTIONS = staticMethod(OPTIONS, "parse", OPTIONS, String[].class, int.class);
+    private static final MethodHandle NEW_PALETTE = constructor(PALETTE, String.class, int[].class);
+    private static final MethodHandle DOWNSCALE = constructor(load("DownscaleImage"), BufferedImage.class, int.class, boolean.class, OPTIONS);
+    private static final MethodHandle GREEN_SCREEN = constructor(load("GreenScreen"), BufferedImage.class, boolean.class, OPTIONS);
+    private static final MethodHandle REDUCE = constructor(load("ReducePalette"), BufferedImage.class, boolean.class, PALETTE, OPTIONS);
+    private static final MethodHandle REDUCE_DITH = constructor(load("ReducePaletteDith"), BufferedImage.class, boolean.class, PALETTE, OPTIONS);
+    private static final MethodHandle REDUCE_RAND = constructor(load("ReducePaletteRand"), BufferedImage.class, boolean.class, PALETTE, OPTIONS);
+    private static final MethodHandle REDUCE_DIFFUSE = constructor(DIFFUSE, BufferedImage.class, boolean.class, PALETTE, KERNEL, OPTIONS);
+    private static final MethodHandle FIND_KERNEL = staticMethod(DIFFUSE, "kernel", KERNEL, String.class);
+    private static final MethodHandle REDUCE_ORDERED = constructor(load("ReducePaletteOrdered"), BufferedImage.class, boolean.class, PALETTE, int.class, OPTIONS);
+    private static final MethodHandle MATRIX_SIZE = staticMethod(load("ReducePaletteOrdered"), "matrixSize", int.class, String.class);
+    private static final MethodHandle UPSCALE = constructor(load("UpscaleImage"), BufferedImage.class, int.class, boolean.class, OPTIONS);
+    private static final MethodHandle PIXELIZE = constructor(load("Pixelize"), BufferedImage.class, int.class, String.class, boolean.class, boolean.class, OPTIONS);
+    private static final MethodHandle EDIT_OUTPUT = virtualMethod(load("ImageEditParent"), "output_image", BufferedImage.class);
+    private static final MethodHandle PIXELIZE_OUTPUT = virtualMethod(load("Pixelize"), "output_image", BufferedImage.class);
+
+    private Pipeline(){ }
+
+    /**
+     * Makes a set of pipeline options from key=value strings, the same as the commandline.
+     * @param args String[], the options, for example "threads=1".
+     * @return options Object, a PixelizeOptions.
+     */
+    static Object options(String... args){
+        try {
+            return PARSE_OPTIONS.invoke(args, 0);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Makes a palette from packed RGB colors.
+     * @param rgb int[], the colors.
+     * @return palette Object, a Palette.
+     */
+    static Object palette(int[] rgb){
+        try {
+            return NEW_PALETTE.invoke("benchmark", rgb);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static BufferedImage downscale(BufferedImage original, int resolution_coefficient, Object options){
+        try {
+            return (BufferedImage)EDIT_OUTPUT.invoke(DOWNSCALE.invoke(original, resolution_coefficient, true, options));
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static BufferedImage greenScreen(BufferedImage original, Object options){
+        try {
+            return (BufferedImage)EDIT_OUTPUT.invoke(GREEN_SCREEN.invoke(original, true, options));
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Reduces the palette of an image with the reducer for a filter type, the same ones Pixelize uses.
+     * @param filter_type String, "none", "dither", "random", the name of an error diffusion kernel, or "bayer2", "bayer4" or "bayer8".
+     * @param original BufferedImage, the image being reduced.
+     * @param palette Object, the Palette to reduce to.
+     * @param options Object, the PixelizeOptions.
+     * @return reduced BufferedImage, the reduced image.
+     */
+    static BufferedImage reduce(String filter_type, BufferedImage original, Object palette, Object options){
+        try {
+            Object reduce;
+            if (filter_type.equals("dither")){
+                reduce = REDUCE_DITH.invoke(original, true, palette, options);
+            } else if (filter_type.equals("random")){
+                reduce = REDUCE_RAND.invoke(original, true, palette, options);
+            } else if (FIND_KERNEL.invoke(filter_type) != null){
+                reduce = REDUCE_DIFFUSE.invoke(original, true, palette, FIND_KERNEL.invoke(filter_type), options);
+            } else if ((int)MATRIX_SIZE.invoke(filter_type) > 0){
+                reduce = REDUCE_ORDERED.invoke(original, true, palette, (int)MATRIX_SIZE.invoke(filter_type), options);
+            } else {
+                reduce = REDUCE.invoke(original, true, palette, options);
+            }
+            return (BufferedImage)EDIT_OUTPUT.invoke(reduce);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static BufferedImage upscale(BufferedImage original, int resolution_multiplier, Object options){
+        try {
+            return (BufferedImage)EDIT_OUTPUT.invoke(UPSCALE.invoke(original, resolution_multiplier, true, options));
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static BufferedImage pixelize(BufferedImage original, int resolution_coefficient, String filter_type, boolean do_not_upscale, boolean chromakey, Object options){
+        try {
+            return (BufferedImage)PIXELIZE_OUTPUT.invoke(PIXELIZE.invoke(original, resolution_coefficient, filter_type, do_not_upscale, chromakey, options));
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static Class<?> load(String name){
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("The rendering pipeline is not on the classpath, missing " + name, e);
+        }
+    }
+
+    private static MethodHandle constructor(Class<?> owner, Class<?>... parameters){
+        try {
+            return lookup.findConstructor(owner, MethodType.methodType(void.class, parameters));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle staticMethod(Class<?> owner, String name, Class<?> result, Class<?>... parameters){
+        try {
+            return lookup.findStatic(owner, name, MethodType.methodType(result, parameters));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle virtualMethod(Class<?> owner, String name, Class<?> result, Class<?>... parameters){
+        try {
+            return lookup.findVirtual(owner, name, MethodType.methodType(result, parameters));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable e){
+        if (e instanceof RuntimeException){
+            return (RuntimeException)e;
+        }
+        if (e instanceof Error){
+            throw (Error)e;
+        }
+        return new IllegalStateException(e);
+    }
+}
@@ -0,0 +1,62 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the whole Pixelize path on an image in memory, from the original to the upscaled result, the way MassPixelize runs it for every file.
+ * The palette is written to a temporary palette file and picked by name, since that's how Pixelize finds its palette.
+ * fused=false times the stages one after another instead of the single pass.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PixelizeBenchmark {
+    @Param({"320x240", "1920x1080"})
+    public String size;
+
+    @Param({"2", "8"})
+    public int resolution_coefficient;
+
+    @Param({"16", "256"})
+    public int palette_size;
+
+    @Param({"none", "dither", "random"})
+    public String filter_type;
+
+    @Param({"true"})
+    public boolean chromakey;
+
+    @Param({"true", "false"})
+    public boolean fused;
+
+    @Param({"INT_RGB"})
+    public String image_type;
+
+    @Param({"1"})
+    public int threads;
+
+    private BufferedImage original;
+    private Object options;
+
+    @Setup
+    public void setup() throws IOException {
+        original = SyntheticImages.image(size, SyntheticImages.imageType(image_type), 2021);
+        Path palettes = SyntheticImages.paletteFile("benchmark", SyntheticImages.paletteColors(palette_size, palette_size));
+        options = Pipeline.options("threads=" + threads, "fused=" + fused, "palette=benchmark", "palettes=" + palettes);
+        //reads the palette file and builds its search before timing starts.
+        Pipeline.pixelize(original, resolution_coefficient, filter_type, false, chromakey, options);
+    }
+
+    @Benchmark
+    public BufferedImage pixelize(){
+        return Pipeline.pixelize(original, resolution_coefficient, filter_type, false, chromakey, options);
+    }
+}
@@ -0,0 +1,56 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the stages that only depend on the image size and the resolution coefficient: DownscaleImage, GreenScreen and UpscaleImage.
+ * Each stage gets the image it would get in the pipeline, so GreenScreen and UpscaleImage run on the downscaled image.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResolutionBenchmark {
+    @Param({"320x240", "1920x1080"})
+    public String size;
+
+    @Param({"2", "4", "8"})
+    public int resolution_coefficient;
+
+    @Param({"INT_RGB"})
+    public String image_type;
+
+    @Param({"1"})
+    public int threads;
+
+    private BufferedImage original;
+    private BufferedImage downscaled;
+    private Object options;
+
+    @Setup
+    public void setup(){
+        original = SyntheticImages.image(size, SyntheticImages.imageType(image_type), 2021);
+        options = Pipeline.options("threads=" + threads);
+        downscaled = Pipeline.downscale(original, resolution_coefficient, options);
+    }
+
+    @Benchmark
+    public BufferedImage downscaleImage(){
+        return Pipeline.downscale(original, resolution_coefficient, options);
+    }
+
+    @Benchmark
+    public BufferedImage greenScreen(){
+        return Pipeline.greenScreen(downscaled, options);
+    }
+
+    @Benchmark
+    public BufferedImage upscaleImage(){
+        return Pipeline.upscale(downscaled, resolution_coefficient, options);
+    }
+}
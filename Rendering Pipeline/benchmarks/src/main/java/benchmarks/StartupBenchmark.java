@@ -0,0 +1,60 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the first image through a fresh JVM in strict headless mode, which is what every short render farm job pays before it gets up to speed.
+ * Every fork measures one cold call, so this covers loading and initializing the pipeline's classes, reading the palette and building its search.
+ * The number of classes loaded by the end of the call is reported alongside the time, so anything that starts pulling in Swing or other
+ * display classes again shows up even when the time is noisy.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 10, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+    @Param({"64x64"})
+    public String size;
+
+    @Param({"4"})
+    public int resolution_coefficient;
+
+    @Param({"dither"})
+    public String filter_type;
+
+    private BufferedImage original;
+    private String palettes;
+
+    /**
+     * The number of classes the JVM has loaded, reported as a secondary result.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class LoadedClasses{
+        public long loaded_classes;
+    }
+
+    //nothing from the pipeline is touched here, so all of it is loaded inside the timed call.
+    @Setup
+    public void setup() throws IOException {
+        original = SyntheticImages.image(size, BufferedImage.TYPE_INT_RGB, 2021);
+        Path path = SyntheticImages.paletteFile("benchmark", SyntheticImages.paletteColors(16, 16));
+        palettes = path.toString();
+    }
+
+    @Benchmark
+    public BufferedImage firstPixelize(LoadedClasses classes){
+        Object options = Pipeline.options("threads=1", "palette=benchmark", "palettes=" + palettes);
+        BufferedImage pixelized = Pipeline.pixelize(original, resolution_coefficient, filter_type, false, true, options);
+        classes.loaded_classes = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+        return pixelized;
+    }
+}
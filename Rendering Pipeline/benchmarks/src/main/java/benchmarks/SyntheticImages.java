@@ -0,0 +1,115 @@
+package benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generates the images and palettes the benchmarks run on, so they don't need any files and always measure the same work.
+ * The images are a mix of what the pipeline gets in practice: smooth gradients, flat blocks of color like sprites, noise,
+ * and a patch of green screen so chromakeying has something to remove.
+ */
+final class SyntheticImages {
+    private SyntheticImages(){ }
+
+    /**
+     * Makes a seeded test image.
+     * @param size String, the size as "widthxheight", for example "1920x1080".
+     * @param type int, the BufferedImage type.
+     * @param seed long, the seed for the noise and blocks.
+     * @return img BufferedImage, the image.
+     */
+    static BufferedImage image(String size, int type, long seed){
+        int x = size.indexOf('x');
+        int width = Integer.parseInt(size.substring(0, x));
+        int height = Integer.parseInt(size.substring(x + 1));
+        Random rand = new Random(seed);
+
+        int[] pixels = new int[width * height];
+        for (int row = 0; row < height; row++){
+            for (int col = 0; col < width; col++){
+                int red = col * 255 / Math.max(1, width - 1);
+                int green = row * 255 / Math.max(1, height - 1);
+                int blue = (col + row) * 255 / Math.max(1, width + height - 2);
+                int noise = rand.nextInt(33) - 16;
+                pixels[row * width + col] = 0xFF000000 | (clamp(red + noise) << 16) | (clamp(green + noise) << 8) | clamp(blue + noise);
+            }
+        }
+
+        //flat blocks of random colors, the kind of areas sprites are made of.
+        for (int block = 0; block < 24; block++){
+            int block_width = 1 + rand.nextInt(Math.max(1, width / 6));
+            int block_height = 1 + rand.nextInt(Math.max(1, height / 6));
+            int left = rand.nextInt(width);
+            int top = rand.nextInt(height);
+            int rgb = 0xFF000000 | rand.nextInt(0x1000000);
+            fill(pixels, width, height, left, top, block_width, block_height, rgb);
+        }
+        //the green screen in the bottom right corner.
+        fill(pixels, width, height, width * 3 / 4, height * 3 / 4, width / 4, height / 4, 0xFF00FF00);
+
+        BufferedImage img = new BufferedImage(width, height, type);
+        img.setRGB(0, 0, width, height, pixels, 0, width);
+        return img;
+    }
+
+    /**
+     * Makes a seeded palette of random colors.
+     * @param palette_size int, the number of colors.
+     * @param seed long, the seed for the colors.
+     * @return colors int[], the colors in packed RGB format.
+     */
+    static int[] paletteColors(int palette_size, long seed){
+        Random rand = new Random(seed);
+        int[] colors = new int[palette_size];
+        for (int i = 0; i < palette_size; i++){
+            colors[i] = rand.nextInt(0x1000000);
+        }
+        return colors;
+    }
+
+    /**
+     * Writes a palette into a temporary file in the named palette format, so it can be picked with the palette and palettes options.
+     * @param name String, the name of the palette.
+     * @param colors int[], the colors in packed RGB format.
+     * @return path Path, the temporary file, deleted when the JVM exits.
+     */
+    static Path paletteFile(String name, int[] colors) throws IOException {
+        StringBuilder text = new StringBuilder(name).append('\n');
+        for (int rgb : colors){
+            text.append((rgb >> 16) & 0xFF).append(',').append((rgb >> 8) & 0xFF).append(',').append(rgb & 0xFF).append('\n');
+        }
+        Path path = Files.createTempFile("benchmark palettes", ".txt");
+        path.toFile().deleteOnExit();
+        Files.write(path, text.toString().getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+
+    /**
+     * Turns an image type name like "INT_RGB" into the BufferedImage constant.
+     * @param name String, the name of the type without TYPE_.
+     * @return type int, the BufferedImage type.
+     */
+    static int imageType(String name){
+        try {
+            return BufferedImage.class.getField("TYPE_" + name).getInt(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Unknown image type " + name, e);
+        }
+    }
+
+    private static void fill(int[] pixels, int width, int height, int left, int top, int block_width, int block_height, int rgb){
+        for (int row = top; row < Math.min(top + block_height, height); row++){
+            for (int col = left; col < Math.min(left + block_width, width); col++){
+                pixels[row * width + col] = rgb;
+            }
+        }
+    }
+
+    private static int clamp(int value){
+        return Math.max(0, Math.min(255, value));
+    }
+}
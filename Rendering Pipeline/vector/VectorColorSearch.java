@@ -0,0 +1,83 @@
+/**
+ * Finds the closest color in a palette the same way LinearColorSearch does, but scores a whole vector of palette colors at once with the
+ * JDK's Vector API, as many as the processor's vector registers hold, which is 8 colors with AVX2 and 16 with AVX-512.
+ * Each lane keeps the best color it has seen and where it was, then the lanes are reduced to the closest color, ties going to the first one in the palette.
+ * <br>
+ * The Vector API is still an incubator module, so this file is kept out of the rest of the pipeline, which builds for Java 11.
+ * Maven compiles it on Java 17 or newer, see the vector profile in pom.xml, and ColorSearch.create loads it by name for the "vector" search.
+ * If the JVM wasn't started with the module, or is too old, the linear search is used instead.
+ * <br>
+ * Compilation:  javac --release 17 --add-modules jdk.incubator.vector -d . vector/VectorColorSearch.java <br>
+ * Execution:    java --add-modules jdk.incubator.vector Pixelize fileName 4 none false false search=vector  <br>
+ * <br>
+ * This file has no testing functionality. Running it from the terminal will do nothing.
+ */
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+public class VectorColorSearch implements ColorSearch{
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    //0, 1, 2 and so on, the palette index each lane starts at.
+    private static final IntVector LANE_INDEXES = IntVector.fromArray(SPECIES, laneIndexes(), 0);
+    private static final IntVector WORST = IntVector.broadcast(SPECIES, Integer.MAX_VALUE);
+
+    private final int size;
+    //the palette's channels, padded with 0 to a whole number of vectors so every load is a full one.
+    private final int[] palette_red;
+    private final int[] palette_green;
+    private final int[] palette_blue;
+
+    /**
+     * The constructor of the VectorColorSearch object. Takes the palette's channels.
+     * @param palette Palette, the palette that colors will be matched against.
+     */
+    public VectorColorSearch(Palette palette){
+        size = palette.size();
+        int padded = (size + LANES - 1) / LANES * LANES;
+        palette_red = new int[padded];
+        palette_green = new int[padded];
+        palette_blue = new int[padded];
+        for (int i = 0; i < size; i++){
+            palette_red[i] = palette.red(i);
+            palette_green[i] = palette.green(i);
+            palette_blue[i] = palette.blue(i);
+        }
+    }
+
+    private static int[] laneIndexes(){
+        int[] indexes = new int[LANES];
+        for (int i = 0; i < LANES; i++){
+            indexes[i] = i;
+        }
+        return indexes;
+    }
+
+    public int nearest(int rgb){
+        return nearestBefore(rgb, size);
+    }
+
+    public int nearestBefore(int rgb, int limit){
+        IntVector red = IntVector.broadcast(SPECIES, (rgb >> 16) & 0xFF);
+        IntVector green = IntVector.broadcast(SPECIES, (rgb >> 8) & 0xFF);
+        IntVector blue = IntVector.broadcast(SPECIES, rgb & 0xFF);
+        IntVector best = WORST;
+        IntVector best_index = WORST;
+        for (int i = 0; i < limit; i += LANES){
+            IntVector distance = IntVector.fromArray(SPECIES, palette_red, i).sub(red).abs()
+                    .add(IntVector.fromArray(SPECIES, palette_green, i).sub(green).abs())
+                    .add(IntVector.fromArray(SPECIES, palette_blue, i).sub(blue).abs());
+            IntVector index = LANE_INDEXES.add(i);
+            //only strictly closer colors replace a lane's best, so each lane keeps the first of any ties, and the padding and anything past limit never win.
+            VectorMask<Integer> closer = distance.compare(VectorOperators.LT, best).and(index.compare(VectorOperators.LT, limit));
+            best = best.blend(distance, closer);
+            best_index = best_index.blend(index, closer);
+        }
+        int best_distance = best.reduceLanes(VectorOperators.MIN);
+        //of the lanes that found the closest distance, the lowest index is the first in the palette.
+        return best_index.blend(WORST, best.compare(VectorOperators.NE, best_distance)).reduceLanes(VectorOperators.MIN);
+    }
+}